@@ -4,6 +4,8 @@ import com.wolfram.jlink.Expr;
 import com.wolfram.jlink.MathLinkFactory;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class Graph<T> implements Cloneable
@@ -325,6 +327,21 @@ public class Graph<T> implements Cloneable
 
     public static boolean pageRankExecutionStopped = false;
 
+    /**
+     * số đỉnh tối thiểu để pageRank chia mỗi bước cho nhiều luồng khi "Parallelism" không được chỉ định
+     */
+    public static int PageRankParallelThreshold = 10000;
+
+    /**
+     * đồ thị được dịch sang dạng CSR theo các cạnh đi vào (mảng int, double) trước khi lặp
+     *
+     * @param g
+     * @param opts "Damping Factor", "Step Number" là số bước tối đa, "Show Progress" (mặc định false),
+     *             "Initial Ranks" là hạng ban đầu của các đỉnh (đỉnh không có thì bắt đầu từ 1/N),
+     *             "Tolerance" là ngưỡng dừng sớm khi tổng thay đổi của các hạng sau một bước nhỏ hơn nó,
+     *             "Parallelism" là số luồng dùng cho mỗi bước
+     * @return
+     */
     public static <T> HashMap<T, Double> pageRank(Graph<T> g, HashMap<String, Object> opts)
     {
         double d;
@@ -341,20 +358,72 @@ public class Graph<T> implements Cloneable
                 stepNum = 0;
             else stepNum = ((Number) aux).intValue();
         }
-        var showIndicator = true;
+        var showIndicator = false;
         {
             var aux = opts.get("Show Progress");
             if (aux != null)
                 showIndicator = ((Boolean) aux).booleanValue();
         }
-        var PR = new HashMap<T, ArrayList<Double>>();
-        var N = g.vertexCount();
-        var vs = g.vertexList();
-        for (var v : vs)
+        var initialRanks = (HashMap<?, ?>) opts.get("Initial Ranks");
+        var tolerance = 0d;
+        {
+            var aux = opts.get("Tolerance");
+            if (aux != null)
+                tolerance = ((Number) aux).doubleValue();
+        }
+        var vs = new ArrayList<T>(g.Adjacency.keySet());
+        var N = vs.size();
+        var parallelism = 1;
+        {
+            var aux = opts.get("Parallelism");
+            if (aux != null)
+                parallelism = ((Number) aux).intValue();
+            else if (N >= PageRankParallelThreshold)
+                parallelism = Runtime.getRuntime().availableProcessors();
+            parallelism = Math.max(1, Math.min(parallelism, N));
+        }
+        var ids = new HashMap<T, Integer>();
+        for (var i = 0; i <= N - 1; i++)
+            ids.put(vs.get(i), i);
+        var outWeights = new double[N];
+        for (var i = 0; i <= N - 1; i++)
         {
-            PR.put(v, new ArrayList<>());
-            PR.get(v).add(1d / N);
+            var v = vs.get(i);
+            for (var w : g.Adjacency.get(v))
+                outWeights[i] += g.getEdgeWeight(v, w);
+        }
+        var inStarts = new int[N + 1];
+        for (var i = 0; i <= N - 1; i++)
+        {
+            var inVs = g.InAdjacency.get(vs.get(i));
+            inStarts[i + 1] = inStarts[i] + (inVs == null ? 0 : inVs.size());
         }
+        // inFactors[k] là d * trọng số cạnh / tổng trọng số các cạnh đi ra của đỉnh nguồn inSources[k]
+        var inSources = new int[inStarts[N]];
+        var inFactors = new double[inStarts[N]];
+        for (var i = 0; i <= N - 1; i++)
+        {
+            var v = vs.get(i);
+            var inVs = g.InAdjacency.get(v);
+            if (inVs == null)
+                continue;
+            var k = inStarts[i];
+            for (var w : inVs)
+            {
+                var j = ids.get(w);
+                inSources[k] = j;
+                inFactors[k] = d * g.getEdgeWeight(w, v) / outWeights[j];
+                k++;
+            }
+        }
+        var ranks = new double[N];
+        for (var i = 0; i <= N - 1; i++)
+        {
+            var initialRank = initialRanks != null ? (Number) initialRanks.get(vs.get(i)) : null;
+            ranks[i] = initialRank != null ? initialRank.doubleValue() : 1d / N;
+        }
+        var newRanks = new double[N];
+        var base = (1 - d) / N;
         ProgressIndicator progress = null;
         if (showIndicator)
         {
@@ -362,45 +431,72 @@ public class Graph<T> implements Cloneable
             progress.setDelay(1000);
             progress.show();
         }
-        var outWeights = new HashMap<T, Double>();
-        for (var v : vs)
-        {
-            var outVs = g.outGoingVertices(v);
-            var vWeight = 0d;
-            for (var w : outVs)
-            {
-                var weight = g.getEdgeWeight(v, w);
-                vWeight += weight;
-            }
-            outWeights.put(v, vWeight);
-        }
-        for (var t = 1; t <= stepNum; t++)
+        var pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try
         {
-            if (showIndicator)
+            for (var t = 1; t <= stepNum; t++)
             {
-                if (progress.Stopped)
-                    break;
-                progress.setValue(t);
-            }
-            for (var v : vs)
-            {
-                var newValue = (1 - d) / N;
-                var inVs = g.inGoingVertices(v);
-                for (var w : inVs)
+                if (showIndicator)
+                {
+                    if (progress.Stopped)
+                        break;
+                    progress.setValue(t);
+                }
+                var change = 0d;
+                if (pool == null)
+                    change = pageRankSweep(0, N, ranks, newRanks, inStarts, inSources, inFactors, base);
+                else
                 {
-                    newValue += (d * PR.get(w).get(0) * g.getEdgeWeight(w, v) / outWeights.get(w));
+                    var tasks = new ArrayList<ForkJoinTask<Double>>();
+                    for (var c = 0; c <= parallelism - 1; c++)
+                    {
+                        var from = (int) ((long) N * c / parallelism);
+                        var to = (int) ((long) N * (c + 1) / parallelism);
+                        var currentRanks = ranks;
+                        var nextRanks = newRanks;
+                        tasks.add(pool.submit(() ->
+                                pageRankSweep(from, to, currentRanks, nextRanks, inStarts, inSources, inFactors, base)));
+                    }
+                    for (var task : tasks)
+                        change += task.join();
                 }
-                PR.get(v).add(newValue);
+                var aux = ranks;
+                ranks = newRanks;
+                newRanks = aux;
+                if (change < tolerance)
+                    break;
             }
-            for (var v : vs)
-                PR.get(v).remove(0);
+        } finally
+        {
+            if (pool != null)
+                pool.shutdown();
         }
         var res = new HashMap<T, Double>();
-        for (var v : vs)
-            res.put(v, PR.get(v).get(0));
+        for (var i = 0; i <= N - 1; i++)
+            res.put(vs.get(i), ranks[i]);
         return res;
     }
 
+    /**
+     * tính hạng mới của các đỉnh from..to-1 từ hạng của bước trước
+     *
+     * @return tổng thay đổi của các hạng này
+     */
+    private static double pageRankSweep(int from, int to, double[] ranks, double[] newRanks,
+                                        int[] inStarts, int[] inSources, double[] inFactors, double base)
+    {
+        var change = 0d;
+        for (var i = from; i <= to - 1; i++)
+        {
+            var newValue = base;
+            for (var k = inStarts[i]; k <= inStarts[i + 1] - 1; k++)
+                newValue += ranks[inSources[k]] * inFactors[k];
+            newRanks[i] = newValue;
+            change += Math.abs(newValue - ranks[i]);
+        }
+        return change;
+    }
+
     public boolean isConnectedGraph()
     {
         if (this.vertexCount() <= 1)
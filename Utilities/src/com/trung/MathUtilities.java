@@ -9,53 +9,27 @@ import java.util.concurrent.atomic.AtomicReference;
 
 public class MathUtilities
 {
+    /**
+     * giải hệ matrix.x=vector, nếu hệ suy biến thì các ẩn ứng với cột phụ thuộc nhận giá trị 0
+     *
+     * @param matrix
+     * @param vector
+     * @return
+     */
     public static ArrayList<Double> solveLinearEquations(
             ArrayList<ArrayList<Number>> matrix,
             ArrayList<Number> vector)
     {
-        NullFunction<ArrayList<ArrayList<Number>>> copyMatrix = () ->
-        {
-            return Utilities.map(
-                    (ArrayList<Number> row) -> (ArrayList<Number>) row.clone()
-                    , matrix);
-        };
-        var copiedMt0 = copyMatrix.apply();
-        var outs0 = new HashMap<String, Object>();
-        makeDiagonalMatrix(copiedMt0, outs0);
-        var rowDeps = Utilities.makeArrayList((Collection<Integer>) outs0.get("independentRows"));
-        if (rowDeps.size() == 0)
-            return Utilities.table(i -> 0d, 0, matrix.get(0).size() - 1);
-        var copiedMt1 = copyMatrix.apply();
-        var outs1 = new HashMap<String, Object>();
-        makeDiagonalMatrix(transpose(copiedMt1), outs1);
-        var columnDeps = Utilities.makeArrayList((Collection<Integer>) outs1.get("independentRows"));
-        var subMatrix = subMatrix(matrix, rowDeps, columnDeps);
-        var subVector = Utilities.map(
-                (Integer i) ->
-                {
-                    var aux = new ArrayList<Number>();
-                    aux.add(vector.get(i));
-                    return aux;
-                }
-                , rowDeps);
-        var sol = matrixProduct(
-                (ArrayList<ArrayList<Number>>) (Object) inverseMatrix(subMatrix), subVector
-        );
-        var mainSol = Utilities.table(
-                i ->
-                {
-                    return 0d;
-                }
-                , 0, vector.size() - 1
-        );
-        for (var i = 0; i <= columnDeps.size() - 1; i++)
-        {
-            var iValue = columnDeps.get(i);
-            mainSol.set(iValue,
-                    sol.get(i).get(0)
-            );
-        }
-        return mainSol;
+        var a = toArray(matrix);
+        var b = new double[vector.size()];
+        for (var i = 0; i <= b.length - 1; i++)
+            b[i] = vector.get(i).doubleValue();
+        return toArrayList(solveLinearEquations(a, b));
+    }
+
+    public static double[] solveLinearEquations(double[][] a, double[] b)
+    {
+        return qrLeastSquares(a, b);
     }
 
     public static ArrayList<ArrayList<Number>> subMatrix(
@@ -76,37 +50,227 @@ public class MathUtilities
                 , res);
     }
 
+    /**
+     * mỗi hàng của input gồm các giá trị của biến và giá trị cần khớp ở cuối
+     *
+     * @param input
+     * @return hệ số của từng biến
+     */
     public static ArrayList<Double> leastSquares(ArrayList<ArrayList<Number>> input)
     {
-        var Amt = Utilities.map(
-                (ArrayList<Number> row) -> Utilities.part(row, 0, row.size() - 2)
-                , input);
-        var bmt = Utilities.map(
-                (ArrayList<Number> row) ->
+        var m = input.size();
+        var a = new double[m][];
+        var b = new double[m];
+        for (var i = 0; i <= m - 1; i++)
+        {
+            var row = input.get(i);
+            var n = row.size() - 1;
+            a[i] = new double[n];
+            for (var j = 0; j <= n - 1; j++)
+                a[i][j] = row.get(j).doubleValue();
+            b[i] = row.get(n).doubleValue();
+        }
+        return toArrayList(leastSquares(a, b));
+    }
+
+    /**
+     * nghiệm bình phương tối thiểu của a.x=b tính trực tiếp trên mảng double, mỗi hàng của a là một điểm dữ liệu;
+     * giải bằng phân tích Cholesky của ma trận chuẩn a^T.a, nếu ma trận này không xác định dương
+     * (các cột của a phụ thuộc tuyến tính) thì giải lại bằng QR có đổi cột, khi đó các cột phụ thuộc nhận hệ số 0
+     *
+     * @param a ma trận m hàng n cột
+     * @param b vector m phần tử
+     * @return vector n phần tử
+     */
+    public static double[] leastSquares(double[][] a, double[] b)
+    {
+        var m = a.length;
+        var n = m == 0 ? 0 : a[0].length;
+        var normal = new double[n][n];
+        var rhs = new double[n];
+        for (var k = 0; k <= m - 1; k++)
+        {
+            var row = a[k];
+            for (var i = 0; i <= n - 1; i++)
+            {
+                var value = row[i];
+                if (value == 0d)
+                    continue;
+                for (var j = 0; j <= i; j++)
+                    normal[i][j] += value * row[j];
+                rhs[i] += value * b[k];
+            }
+        }
+        var res = choleskySolve(normal, rhs);
+        if (res != null)
+            return res;
+        return qrLeastSquares(a, b);
+    }
+
+    /**
+     * giải normal.x=rhs với normal đối xứng, chỉ phần tam giác dưới được dùng và bị ghi đè bởi L
+     *
+     * @return null nếu normal không xác định dương một cách chắc chắn
+     */
+    private static double[] choleskySolve(double[][] normal, double[] rhs)
+    {
+        var n = rhs.length;
+        var scale = 0d;
+        for (var i = 0; i <= n - 1; i++)
+            scale = Math.max(scale, normal[i][i]);
+        var tolerance = scale * n * 1e-12;
+        for (var j = 0; j <= n - 1; j++)
+        {
+            var d = normal[j][j];
+            for (var k = 0; k <= j - 1; k++)
+                d -= normal[j][k] * normal[j][k];
+            if (!(d > tolerance))
+                return null;
+            var ljj = Math.sqrt(d);
+            normal[j][j] = ljj;
+            for (var i = j + 1; i <= n - 1; i++)
+            {
+                var value = normal[i][j];
+                for (var k = 0; k <= j - 1; k++)
+                    value -= normal[i][k] * normal[j][k];
+                normal[i][j] = value / ljj;
+            }
+        }
+        var y = new double[n];
+        for (var i = 0; i <= n - 1; i++)
+        {
+            var value = rhs[i];
+            for (var k = 0; k <= i - 1; k++)
+                value -= normal[i][k] * y[k];
+            y[i] = value / normal[i][i];
+        }
+        var res = new double[n];
+        for (var i = n - 1; i >= 0; i--)
+        {
+            var value = y[i];
+            for (var k = i + 1; k <= n - 1; k++)
+                value -= normal[k][i] * res[k];
+            res[i] = value / normal[i][i];
+        }
+        return res;
+    }
+
+    /**
+     * bình phương tối thiểu bằng phép biến đổi Householder có đổi cột, dừng khi phần còn lại của các cột
+     * nhỏ hơn sai số, các ẩn chưa được chọn nhận giá trị 0; a và b không bị thay đổi
+     */
+    private static double[] qrLeastSquares(double[][] a, double[] b)
+    {
+        var m = a.length;
+        var n = m == 0 ? 0 : a[0].length;
+        var r = new double[m][];
+        for (var i = 0; i <= m - 1; i++)
+            r[i] = a[i].clone();
+        var qtb = b.clone();
+        var columns = new int[n];
+        var norms = new double[n];
+        var maxNorm = 0d;
+        for (var j = 0; j <= n - 1; j++)
+        {
+            columns[j] = j;
+            for (var i = 0; i <= m - 1; i++)
+                norms[j] += r[i][j] * r[i][j];
+            maxNorm = Math.max(maxNorm, norms[j]);
+        }
+        var tolerance = Math.sqrt(maxNorm) * Math.max(m, n) * 1e-12;
+        var rank = 0;
+        for (var k = 0; k <= Math.min(m, n) - 1; k++)
+        {
+            var best = k;
+            for (var j = k + 1; j <= n - 1; j++)
+                if (norms[j] > norms[best])
+                    best = j;
+            if (best != k)
+            {
+                for (var i = 0; i <= m - 1; i++)
                 {
-                    var aux = new ArrayList<Number>();
-                    aux.add(Utilities.getLastElement(row));
-                    return aux;
+                    var aux = r[i][k];
+                    r[i][k] = r[i][best];
+                    r[i][best] = aux;
                 }
-                , input
-        );
-        var mtProd = (ArrayList<ArrayList<Number>>) (Object) matrixProduct(transpose(Amt), Amt);
-        var vector = (ArrayList<ArrayList<Number>>) (Object) matrixProduct(transpose(Amt), bmt);
-        if (determinant(mtProd) != 0d)
+                var auxNorm = norms[k];
+                norms[k] = norms[best];
+                norms[best] = auxNorm;
+                var auxColumn = columns[k];
+                columns[k] = columns[best];
+                columns[best] = auxColumn;
+            }
+            var alpha = 0d;
+            for (var i = k; i <= m - 1; i++)
+                alpha += r[i][k] * r[i][k];
+            alpha = Math.sqrt(alpha);
+            if (alpha <= tolerance)
+                break;
+            if (r[k][k] > 0)
+                alpha = -alpha;
+            var v = new double[m - k];
+            for (var i = k; i <= m - 1; i++)
+                v[i - k] = r[i][k];
+            v[0] -= alpha;
+            var vNorm = 0d;
+            for (var value : v)
+                vNorm += value * value;
+            if (vNorm != 0d)
+            {
+                for (var j = k; j <= n - 1; j++)
+                {
+                    var dot = 0d;
+                    for (var i = k; i <= m - 1; i++)
+                        dot += v[i - k] * r[i][j];
+                    var factor = 2 * dot / vNorm;
+                    for (var i = k; i <= m - 1; i++)
+                        r[i][j] -= factor * v[i - k];
+                }
+                var dot = 0d;
+                for (var i = k; i <= m - 1; i++)
+                    dot += v[i - k] * qtb[i];
+                var factor = 2 * dot / vNorm;
+                for (var i = k; i <= m - 1; i++)
+                    qtb[i] -= factor * v[i - k];
+            }
+            for (var j = k + 1; j <= n - 1; j++)
+                norms[j] -= r[k][j] * r[k][j];
+            rank++;
+        }
+        var sol = new double[n];
+        for (var i = rank - 1; i >= 0; i--)
         {
-            var res = matrixProduct((ArrayList<ArrayList<Number>>) (Object) inverseMatrix(mtProd),
-                    vector);
-            return Utilities.map(
-                    (ArrayList<Double> x) -> x.get(0)
-                    , res);
-        } else
+            var value = qtb[i];
+            for (var j = i + 1; j <= rank - 1; j++)
+                value -= r[i][j] * sol[j];
+            sol[i] = value / r[i][i];
+        }
+        var res = new double[n];
+        for (var j = 0; j <= rank - 1; j++)
+            res[columns[j]] = sol[j];
+        return res;
+    }
+
+    private static double[][] toArray(ArrayList<ArrayList<Number>> matrix)
+    {
+        var res = new double[matrix.size()][];
+        for (var i = 0; i <= res.length - 1; i++)
         {
-            return solveLinearEquations(mtProd,
-                    Utilities.map((ArrayList<Number> x) -> x.get(0), vector)
-            );
+            var row = matrix.get(i);
+            res[i] = new double[row.size()];
+            for (var j = 0; j <= row.size() - 1; j++)
+                res[i][j] = row.get(j).doubleValue();
         }
+        return res;
     }
 
+    private static ArrayList<Double> toArrayList(double[] vector)
+    {
+        var res = new ArrayList<Double>(vector.length);
+        for (var value : vector)
+            res.add(value);
+        return res;
+    }
 
     public static ArrayList<ArrayList<Number>> makeMatrix(int m, int n, BinaryFunction<Integer, Integer, Number> indexf)
     {
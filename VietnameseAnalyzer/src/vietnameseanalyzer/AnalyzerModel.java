@@ -0,0 +1,83 @@
+package vietnameseanalyzer;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * tập các bảng thống kê dùng để phân tích câu; khi phân tích, các bảng được gán thẳng (không sao chép)
+ * vào các biến tĩnh của VietnameseAnalyzer nên người dùng không được sửa các bảng lấy ra bằng getTable,
+ * các luồng dùng cùng một model chạy song song còn đổi sang model khác thì phải chờ
+ */
+public final class AnalyzerModel
+{
+    private final Map<String, Object> Tables;
+    /**
+     * chỉ mục của các bảng, được tạo ở lần đầu model được dùng và giữ lại cho các lần sau
+     */
+    ModelIndex Index = null;
+    private final SegmentationCache Segmentations = new SegmentationCache(4096);
+
+    public AnalyzerModel(Map<String, Object> tables)
+    {
+        this.Tables = Collections.unmodifiableMap(new LinkedHashMap<>(tables));
+    }
+
+    /**
+     * @param name
+     * @return chính bảng của model chứ không phải bản sao
+     */
+    public Object getTable(String name)
+    {
+        return this.Tables.get(name);
+    }
+
+    /**
+     * @return kết quả tách từ của các đoạn câu đã được phân tích với model này
+     */
+    public SegmentationCache getSegmentations()
+    {
+        return this.Segmentations;
+    }
+
+    public Set<String> getTableNames()
+    {
+        return this.Tables.keySet();
+    }
+
+    Map<String, Object> getTables()
+    {
+        return this.Tables;
+    }
+
+    /**
+     * tính model từ kho dữ liệu huấn luyện
+     *
+     * @param treebank
+     * @return
+     */
+    public static AnalyzerModel build(Treebank treebank)
+    {
+        return VietnameseAnalyzer.buildModel(treebank);
+    }
+
+    /**
+     * nạp model từ tệp snapshot, tệp phải có đủ các bảng mà buildModel tính
+     *
+     * @param snapshot
+     * @return
+     */
+    public static AnalyzerModel load(Path snapshot)
+    {
+        var tables = ModelSnapshot.read(snapshot);
+        VietnameseAnalyzer.checkModelTables(tables);
+        return new AnalyzerModel(tables);
+    }
+
+    public void save(Path snapshot)
+    {
+        ModelSnapshot.write(snapshot, new LinkedHashMap<>(this.Tables));
+    }
+}
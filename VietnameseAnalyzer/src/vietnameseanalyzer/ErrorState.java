@@ -0,0 +1,236 @@
+package vietnameseanalyzer;
+
+import com.trung.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * các lỗi của một cây được giữ theo từng đỉnh và từng cạnh, khi thay một vài cạnh chỉ các đỉnh có thể bị ảnh hưởng
+ * mới được kiểm tra lại; getErrors cho cùng kết quả với countErrors của cây hiện tại
+ */
+public class ErrorState
+{
+    private final Graph<WordVertex> Tree;
+    /**
+     * true nếu các đỉnh không có cạnh nào bị bỏ khỏi cây như trong errorTreeCompare
+     */
+    private final boolean IgnoreIsolated;
+    private final HashMap<String, Object> Errors = new HashMap<>();
+    private final HashMap<String, HashSet<Object>> ErrorSets = new HashMap<>();
+    private final HashMap<WordVertex, ArrayList<String>> VertexErrors = new HashMap<>();
+
+    public ErrorState(Graph<WordVertex> tree, boolean ignoreIsolated)
+    {
+        var copiedTree = tree.clone();
+        if (copiedTree instanceof Parser)
+            ((Parser) copiedTree).deleteMeaningSupplementEdges();
+        if (ignoreIsolated)
+            copiedTree.deleteVertices(VietnameseAnalyzer.isolatedVertices(copiedTree));
+        this.Tree = copiedTree;
+        this.IgnoreIsolated = ignoreIsolated;
+        for (var name : VietnameseAnalyzer.ErrorPropertyNames)
+        {
+            var set = new HashSet<Object>();
+            this.ErrorSets.put(name, set);
+            this.Errors.put(name, set);
+        }
+        for (var ed : this.Tree.edgeList())
+            if (!VietnameseAnalyzer.isSensibleEdge(ed))
+                this.ErrorSets.get(VietnameseAnalyzer.isSensibleEdgeStr).add(ed);
+        evaluate(this.Tree.vertexList());
+    }
+
+    /**
+     * @return cấu trúc giống countErrors, được cập nhật tại chỗ sau mỗi lần thay cạnh nên không được sửa
+     */
+    public HashMap<String, Object> getErrors()
+    {
+        return this.Errors;
+    }
+
+    /**
+     * xóa các cạnh removedEds rồi thêm các cạnh addedEds vào cây, cây phải luôn là một rừng
+     *
+     * @param removedEds
+     * @param addedEds
+     */
+    public void replaceEdges(Collection<ArrayList<WordVertex>> removedEds, Collection<ArrayList<WordVertex>> addedEds)
+    {
+        var sensibleErrors = this.ErrorSets.get(VietnameseAnalyzer.isSensibleEdgeStr);
+        // lỗi của một đỉnh khác nhau giữa cây đầu và cây cuối thì phải khác nhau qua một lần thay cạnh nào đó,
+        // nên chỉ cần gom các đỉnh bị ảnh hưởng của từng lần rồi kiểm tra lại một lần trên cây cuối
+        var dirtyVs = new HashSet<WordVertex>();
+        for (var ed : removedEds)
+        {
+            dirtyVs.addAll(getAffectedVertices(ed));
+            this.Tree.deleteEdge(ed);
+            sensibleErrors.remove(ed);
+            if (this.IgnoreIsolated)
+                for (var v : ed)
+                    if (this.Tree.containsVertex(v) && this.Tree.vertexInDegree(v) == 0 && this.Tree.vertexOutDegree(v) == 0)
+                        this.Tree.deleteVertex(v);
+        }
+        for (var ed : addedEds)
+        {
+            this.Tree.addEdge(ed.get(0), ed.get(1));
+            if (!VietnameseAnalyzer.isSensibleEdge(ed))
+                sensibleErrors.add(ed);
+            dirtyVs.addAll(getAffectedVertices(ed));
+        }
+        var evaluatedVs = new ArrayList<WordVertex>();
+        for (var v : dirtyVs)
+            if (this.Tree.containsVertex(v))
+                evaluatedVs.add(v);
+            else clearVertexErrors(v);
+        evaluate(evaluatedVs);
+    }
+
+    private WordVertex getHead(WordVertex v)
+    {
+        for (var head : this.Tree.outGoingVertices(v))
+            return head;
+        return null;
+    }
+
+    private WordVertex getRoot(WordVertex v)
+    {
+        for (var head = getHead(v); head != null; head = getHead(v))
+            v = head;
+        return v;
+    }
+
+    /**
+     * các đỉnh mà lỗi có thể khác nhau giữa cây hiện tại (đang có cạnh ed) và cây không có ed, gọi S là cây con
+     * của đỉnh đầu và T là phần còn lại của thành phần liên thông:
+     * isAdverb của một đỉnh chỉ phụ thuộc vào đỉnh cha, các đỉnh anh em, các con và bậc vào của các con nên chỉ
+     * đổi với các đỉnh gần hai đầu cạnh, các luật theo các đỉnh đi vào đổi với cha của các đỉnh đó;
+     * isMissingNoun và isPLikeAdverb xét các đỉnh cùng thành phần nằm giữa một đỉnh và cha của nó, quan hệ tổ tiên
+     * chỉ đổi giữa S và T nên chỉ các cạnh của S vắt qua một vị trí của T (và ngược lại) bị ảnh hưởng;
+     * isCloseSeparationError đi sang phải qua các vị trí liền nhau khi gặp trạng từ, nên chỉ đổi với các đỉnh
+     * đi tới được ranh giới giữa S và T hoặc một đỉnh gần hai đầu cạnh theo cách đó
+     */
+    private HashSet<WordVertex> getAffectedVertices(ArrayList<WordVertex> ed)
+    {
+        var tail = ed.get(0);
+        var head = ed.get(1);
+        var res = new HashSet<WordVertex>();
+        var nearVs = new HashSet<WordVertex>();
+        nearVs.add(tail);
+        nearVs.add(head);
+        nearVs.addAll(this.Tree.inGoingVertices(tail));
+        nearVs.addAll(this.Tree.inGoingVertices(head));
+        var headHead = getHead(head);
+        if (headHead != null)
+        {
+            nearVs.add(headHead);
+            var headHeadHead = getHead(headHead);
+            if (headHeadHead != null)
+                nearVs.add(headHeadHead);
+        }
+        res.addAll(nearVs);
+        var subTree = this.Tree.vertexInComponent(tail);
+        var rest = this.Tree.vertexInComponent(getRoot(head));
+        rest.removeAll(subTree);
+        addCrossingVertices(subTree, rest, res);
+        addCrossingVertices(rest, subTree, res);
+        var byLocation = new HashMap<Integer, ArrayList<WordVertex>>();
+        for (var v : subTree)
+            byLocation.computeIfAbsent(v.Location, x -> new ArrayList<>()).add(v);
+        for (var v : rest)
+            byLocation.computeIfAbsent(v.Location, x -> new ArrayList<>()).add(v);
+        // đi sang trái từ các đỉnh gần hai đầu cạnh và từ các đỉnh có đỉnh bên trái thuộc phần kia, tức là
+        // ranh giới giữa S và T
+        var starts = new ArrayList<WordVertex>(nearVs);
+        for (var v : subTree)
+        {
+            var leftVs = byLocation.get(v.Location - 1);
+            if (leftVs != null && !subTree.containsAll(leftVs))
+                starts.add(v);
+        }
+        for (var v : rest)
+        {
+            var leftVs = byLocation.get(v.Location - 1);
+            if (leftVs != null && !rest.containsAll(leftVs))
+                starts.add(v);
+        }
+        var walkedVs = new HashSet<WordVertex>();
+        for (var v : starts)
+            for (var location = v.Location - 1; ; location--)
+            {
+                var locationVs = byLocation.get(location);
+                if (locationVs == null)
+                    break;
+                res.addAll(locationVs);
+                var passed = false;
+                var continued = false;
+                for (var w : locationVs)
+                {
+                    if (!walkedVs.add(w))
+                        passed = true;
+                    else if (VietnameseAnalyzer.isAdverb(this.Tree, w))
+                        continued = true;
+                }
+                if (passed || !continued)
+                    break;
+            }
+        return res;
+    }
+
+    /**
+     * thêm vào res các đỉnh v của vs có đỉnh cha trong vs mà khoảng vị trí giữa v và cha chứa vị trí của một đỉnh
+     * của others
+     */
+    private void addCrossingVertices(HashSet<WordVertex> vs, HashSet<WordVertex> others, HashSet<WordVertex> res)
+    {
+        var locations = new int[others.size()];
+        var k = 0;
+        for (var v : others)
+            locations[k++] = v.Location;
+        Arrays.sort(locations);
+        for (var v : vs)
+        {
+            var head = getHead(v);
+            if (head == null || !vs.contains(head))
+                continue;
+            var low = Math.min(v.Location, head.Location);
+            var high = Math.max(v.Location, head.Location);
+            var position = Arrays.binarySearch(locations, low);
+            if (position < 0)
+                position = -position - 1;
+            if (position <= locations.length - 1 && locations[position] <= high)
+                res.add(v);
+        }
+    }
+
+    private void clearVertexErrors(WordVertex v)
+    {
+        var names = this.VertexErrors.remove(v);
+        if (names != null)
+            for (var name : names)
+                this.ErrorSets.get(name).remove(v);
+    }
+
+    private void evaluate(Collection<WordVertex> vs)
+    {
+        // mỗi đỉnh được kiểm tra trong thành phần liên thông của nó giống countErrors
+        var byRoot = new HashMap<WordVertex, ArrayList<WordVertex>>();
+        for (var v : vs)
+            byRoot.computeIfAbsent(getRoot(v), x -> new ArrayList<>()).add(v);
+        for (var root : byRoot.keySet())
+        {
+            var subTree = this.Tree.subgraph(this.Tree.vertexInComponent(root));
+            for (var v : byRoot.get(root))
+            {
+                clearVertexErrors(v);
+                var names = VietnameseAnalyzer.getVertexErrorNames(subTree, v);
+                for (var name : names)
+                    this.ErrorSets.get(name).add(v);
+                this.VertexErrors.put(v, names);
+            }
+        }
+    }
+}
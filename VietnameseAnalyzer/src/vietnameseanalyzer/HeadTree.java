@@ -0,0 +1,246 @@
+package vietnameseanalyzer;
+
+import com.trung.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * một rừng cây phụ thuộc được giữ gọn bằng mảng: các đỉnh sắp theo (vị trí, kiểu, từ) và Heads[i] là chỉ số
+ * đỉnh cha của đỉnh i hoặc -1 nếu i là gốc; sao chép một cây chỉ là sao chép mảng Heads nên dùng được trong
+ * các vòng tìm kiếm, cây chỉ được đổi lại thành Graph khi cần
+ */
+public final class HeadTree
+{
+    private final WordVertex[] Vertices;
+    private final HashMap<WordVertex, Integer> Indices;
+    private final int[] Heads;
+
+    private HeadTree(WordVertex[] vertices, HashMap<WordVertex, Integer> indices, int[] heads)
+    {
+        this.Vertices = vertices;
+        this.Indices = indices;
+        this.Heads = heads;
+    }
+
+    /**
+     * @param vertices
+     * @param edges    các cạnh đi từ đỉnh con đến đỉnh cha, đỉnh của cạnh chưa có trong vertices được thêm vào
+     * @return cây hoặc null nếu có đỉnh có hơn một cạnh đi ra hoặc các cạnh tạo thành chu trình
+     */
+    public static HeadTree of(Collection<WordVertex> vertices, Collection<ArrayList<WordVertex>> edges)
+    {
+        var vs = new ArrayList<WordVertex>(vertices);
+        var indices = new HashMap<WordVertex, Integer>();
+        for (var v : vs)
+            indices.put(v, 0);
+        for (var ed : edges)
+            for (var v : ed)
+                if (!indices.containsKey(v))
+                {
+                    indices.put(v, 0);
+                    vs.add(v);
+                }
+        vs.sort((x, y) ->
+        {
+            if (x.Location != y.Location)
+                return x.Location < y.Location ? -1 : 1;
+            var order = x.Type.compareTo(y.Type);
+            if (order != 0)
+                return order;
+            return x.Word.compareTo(y.Word);
+        });
+        var n = vs.size();
+        var vertexArr = vs.toArray(new WordVertex[n]);
+        for (var i = 0; i <= n - 1; i++)
+            indices.put(vertexArr[i], i);
+        var heads = new int[n];
+        Arrays.fill(heads, -1);
+        for (var ed : edges)
+        {
+            var tail = indices.get(ed.get(0));
+            if (heads[tail] != -1)
+                return null;
+            heads[tail] = indices.get(ed.get(1));
+        }
+        var res = new HeadTree(vertexArr, indices, heads);
+        if (res.hasCycle())
+            return null;
+        return res;
+    }
+
+    /**
+     * @param g
+     * @return cây gồm các đỉnh và các cạnh của g (bỏ các cạnh bổ sung nghĩa nếu g là Parser) hoặc null
+     */
+    public static HeadTree of(Graph<WordVertex> g)
+    {
+        var eds = g.edgeList();
+        if (g instanceof Parser)
+        {
+            eds = new HashSet<>(eds);
+            eds.removeAll(((Parser) g).MeaningSupplementEdges);
+        }
+        return of(g.vertexList(), eds);
+    }
+
+    private boolean hasCycle()
+    {
+        var n = this.Heads.length;
+        // 0: chưa thăm, 1: đang thăm, 2: đã biết không nằm trên chu trình
+        var states = new byte[n];
+        for (var i = 0; i <= n - 1; i++)
+        {
+            var v = i;
+            while (v != -1 && states[v] == 0)
+            {
+                states[v] = 1;
+                v = this.Heads[v];
+            }
+            if (v != -1 && states[v] == 1)
+                return true;
+            for (var w = i; w != -1 && states[w] == 1; w = this.Heads[w])
+                states[w] = 2;
+        }
+        return false;
+    }
+
+    public int size()
+    {
+        return this.Vertices.length;
+    }
+
+    public WordVertex getVertex(int i)
+    {
+        return this.Vertices[i];
+    }
+
+    /**
+     * @param v
+     * @return chỉ số của v hoặc -1 nếu v không có trong cây
+     */
+    public int indexOf(WordVertex v)
+    {
+        var res = this.Indices.get(v);
+        return res == null ? -1 : res;
+    }
+
+    public int getHead(int i)
+    {
+        return this.Heads[i];
+    }
+
+    /**
+     * đổi đỉnh cha của i, người gọi phải bảo đảm không tạo ra chu trình
+     *
+     * @param i
+     * @param head chỉ số đỉnh cha hoặc -1
+     */
+    public void setHead(int i, int head)
+    {
+        this.Heads[i] = head;
+    }
+
+    /**
+     * @return bản sao dùng chung các đỉnh, chỉ mảng Heads được sao chép
+     */
+    public HeadTree copy()
+    {
+        return new HeadTree(this.Vertices, this.Indices, this.Heads.clone());
+    }
+
+    /**
+     * @param i
+     * @param j
+     * @return true nếu i là j hoặc đi theo các đỉnh cha từ i sẽ gặp j
+     */
+    public boolean isDescendant(int i, int j)
+    {
+        for (var v = i; v != -1; v = this.Heads[v])
+            if (v == j)
+                return true;
+        return false;
+    }
+
+    /**
+     * @return true nếu cây có đúng một gốc, giống isSpanningTree
+     */
+    public boolean isSpanningTree()
+    {
+        var roots = 0;
+        for (var head : this.Heads)
+            if (head == -1)
+                roots++;
+        return roots == 1 && !hasCycle();
+    }
+
+    /**
+     * @return các đỉnh con của từng đỉnh, theo thứ tự chỉ số
+     */
+    public int[][] getChildren()
+    {
+        var n = this.Heads.length;
+        var counts = new int[n];
+        for (var head : this.Heads)
+            if (head != -1)
+                counts[head]++;
+        var res = new int[n][];
+        for (var i = 0; i <= n - 1; i++)
+            res[i] = new int[counts[i]];
+        Arrays.fill(counts, 0);
+        for (var i = 0; i <= n - 1; i++)
+        {
+            var head = this.Heads[i];
+            if (head != -1)
+                res[head][counts[head]++] = i;
+        }
+        return res;
+    }
+
+    /**
+     * @return cây đã bỏ các đỉnh không có cạnh nào, là chính cây này nếu không có đỉnh nào bị bỏ
+     */
+    public HeadTree withoutIsolated()
+    {
+        var n = this.Heads.length;
+        var connected = new boolean[n];
+        for (var i = 0; i <= n - 1; i++)
+            if (this.Heads[i] != -1)
+            {
+                connected[i] = true;
+                connected[this.Heads[i]] = true;
+            }
+        var newIndices = new int[n];
+        var size = 0;
+        for (var i = 0; i <= n - 1; i++)
+            newIndices[i] = connected[i] ? size++ : -1;
+        if (size == n)
+            return this;
+        var vertices = new WordVertex[size];
+        var indices = new HashMap<WordVertex, Integer>();
+        var heads = new int[size];
+        for (var i = 0; i <= n - 1; i++)
+        {
+            var newIndex = newIndices[i];
+            if (newIndex == -1)
+                continue;
+            vertices[newIndex] = this.Vertices[i];
+            indices.put(this.Vertices[i], newIndex);
+            heads[newIndex] = this.Heads[i] == -1 ? -1 : newIndices[this.Heads[i]];
+        }
+        return new HeadTree(vertices, indices, heads);
+    }
+
+    public Graph<WordVertex> toGraph()
+    {
+        var res = new Graph<WordVertex>();
+        res.addVertices(Arrays.asList(this.Vertices));
+        for (var i = 0; i <= this.Heads.length - 1; i++)
+            if (this.Heads[i] != -1)
+                res.addEdge(this.Vertices[i], this.Vertices[this.Heads[i]]);
+        return res;
+    }
+}
@@ -0,0 +1,229 @@
+package vietnameseanalyzer;
+
+import com.trung.BinaryFunction;
+import com.trung.UnaryFunction;
+import com.trung.Utilities;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * tách từ bằng quy hoạch động trên lưới các SegmentWord: mỗi từ là một nút, hai từ liền nhau
+ * (từ sau bắt đầu ngay sau từ trước) nối với nhau bằng một cạnh có chi phí, kết quả là dãy từ phủ
+ * hết các âm tiết có tổng chi phí nhỏ nhất, khi bằng nhau thì chọn dãy có tổng số lần xuất hiện lớn hơn;
+ * các từ bị ép (force) chia câu thành các đoạn được tách độc lập với nhau trong cùng một lần duyệt
+ */
+public class LatticeSegmenter
+{
+    private final List<SegmentWord> Words;
+    private final int Length;
+    private final ArrayList<ArrayList<Integer>> ByStart = new ArrayList<>();
+    private final ArrayList<ArrayList<Integer>> ByEnd = new ArrayList<>();
+    /**
+     * Boundaries[p] là true nếu âm tiết p bắt đầu một đoạn mới, ForcedAt[p] là từ bị ép bắt đầu tại p
+     */
+    private final boolean[] Boundaries;
+    private final SegmentWord[] ForcedAt;
+
+    /**
+     * @param words  các từ ứng viên, Start và End là chỉ số âm tiết
+     * @param length số âm tiết của câu
+     */
+    public LatticeSegmenter(List<SegmentWord> words, int length)
+    {
+        this.Words = words;
+        this.Length = length;
+        this.Boundaries = new boolean[length + 1];
+        this.ForcedAt = new SegmentWord[length];
+        for (var i = 0; i <= length - 1; i++)
+        {
+            this.ByStart.add(new ArrayList<>());
+            this.ByEnd.add(new ArrayList<>());
+        }
+        for (var i = 0; i <= words.size() - 1; i++)
+        {
+            var word = words.get(i);
+            this.ByStart.get(word.Start).add(i);
+            this.ByEnd.get(word.End).add(i);
+        }
+    }
+
+    /**
+     * bắt buộc word có mặt trong kết quả, hai phía của word được tách như hai câu riêng
+     *
+     * @param word
+     */
+    public void force(SegmentWord word)
+    {
+        this.ForcedAt[word.Start] = word;
+        this.Boundaries[word.Start] = true;
+        this.Boundaries[word.End + 1] = true;
+    }
+
+    public boolean isForced(SegmentWord word)
+    {
+        return this.ForcedAt[word.Start] == word;
+    }
+
+    /**
+     * từ được dùng nếu không vắt qua ranh giới của đoạn và không nằm trong một từ bị ép khác
+     */
+    public boolean isAllowed(SegmentWord word)
+    {
+        for (var p = word.Start + 1; p <= word.End; p++)
+            if (this.Boundaries[p])
+                return false;
+        for (var p = word.Start; p >= 0; p--)
+        {
+            var forced = this.ForcedAt[p];
+            if (forced != null && forced.End >= word.Start)
+                return forced == word;
+            if (this.Boundaries[p])
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * các từ được dùng có một từ liền kề trong cùng đoạn sao cho cả hai nằm trong một từ được dùng dài hơn
+     *
+     * @return
+     */
+    public HashSet<SegmentWord> getContainedAdjacentWords()
+    {
+        var allowed = new boolean[this.Words.size()];
+        // coverEnds[p] là End lớn nhất của các từ được dùng bắt đầu từ đầu đoạn đến p
+        var coverEnds = new int[this.Length];
+        for (var p = 0; p <= this.Length - 1; p++)
+        {
+            coverEnds[p] = p == 0 || this.Boundaries[p] ? -1 : coverEnds[p - 1];
+            for (var v : this.ByStart.get(p))
+            {
+                allowed[v] = isAllowed(this.Words.get(v));
+                if (allowed[v])
+                    coverEnds[p] = Math.max(coverEnds[p], this.Words.get(v).End);
+            }
+        }
+        var res = new HashSet<SegmentWord>();
+        for (var p = 1; p <= this.Length - 1; p++)
+        {
+            if (this.Boundaries[p])
+                continue;
+            for (var u : this.ByEnd.get(p - 1))
+            {
+                if (!allowed[u])
+                    continue;
+                var v0 = this.Words.get(u);
+                for (var v : this.ByStart.get(p))
+                {
+                    var v1 = this.Words.get(v);
+                    if (allowed[v] && coverEnds[v0.Start] >= v1.End)
+                    {
+                        res.add(v0);
+                        res.add(v1);
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param edgeCost  chi phí của cạnh nối hai từ liền nhau trong cùng đoạn, cạnh qua ranh giới đoạn có chi phí 0
+     * @param frequency số lần xuất hiện của từ, dùng khi hai dãy có cùng chi phí
+     * @return dãy từ tốt nhất hoặc null nếu không có dãy nào phủ hết câu
+     */
+    public ArrayList<SegmentWord> segment(BinaryFunction<SegmentWord, SegmentWord, Double> edgeCost,
+                                          UnaryFunction<SegmentWord, Integer> frequency)
+    {
+        var size = this.Words.size();
+        var costs = new double[size];
+        var frequencies = new long[size];
+        var previous = new int[size];
+        var reached = new boolean[size];
+        for (var p = 0; p <= this.Length - 1; p++)
+            for (var v : this.ByStart.get(p))
+            {
+                var word = this.Words.get(v);
+                if (!isAllowed(word))
+                    continue;
+                var wordFrequency = frequency.apply(word);
+                previous[v] = -1;
+                if (p == 0)
+                {
+                    reached[v] = true;
+                    costs[v] = 0d;
+                    frequencies[v] = wordFrequency;
+                    continue;
+                }
+                for (var u : this.ByEnd.get(p - 1))
+                {
+                    if (!reached[u])
+                        continue;
+                    var cost = costs[u] + (this.Boundaries[p] ? 0d : edgeCost.apply(this.Words.get(u), word));
+                    var pathFrequency = frequencies[u] + wordFrequency;
+                    if (!reached[v] || cost < costs[v] || (cost == costs[v] && pathFrequency > frequencies[v]))
+                    {
+                        reached[v] = true;
+                        costs[v] = cost;
+                        frequencies[v] = pathFrequency;
+                        previous[v] = u;
+                    }
+                }
+            }
+        var last = -1;
+        if (this.Length > 0)
+            for (var v : this.ByEnd.get(this.Length - 1))
+            {
+                if (!reached[v])
+                    continue;
+                if (last == -1 || costs[v] < costs[last] || (costs[v] == costs[last] && frequencies[v] > frequencies[last]))
+                    last = v;
+            }
+        if (last == -1)
+            return null;
+        var res = new ArrayList<SegmentWord>();
+        for (var v = last; v != -1; v = previous[v])
+            res.add(this.Words.get(v));
+        var n = res.size();
+        for (var i = 0; i <= n / 2 - 1; i++)
+        {
+            var aux = res.get(i);
+            res.set(i, res.get(n - 1 - i));
+            res.set(n - 1 - i, aux);
+        }
+        return res;
+    }
+
+    /**
+     * khi không có dãy từ phủ hết câu: đoạn âm tiết nằm giữa phần có thể đi tới từ đầu câu
+     * và phần có thể đi tới cuối câu
+     *
+     * @return {âm tiết đầu, âm tiết cuối} của đoạn không xử lý được
+     */
+    public int[] unreachableRange()
+    {
+        var size = this.Words.size();
+        var fromStart = new boolean[size];
+        var toEnd = new boolean[size];
+        var maxOutIndex = -1;
+        for (var p = 0; p <= this.Length - 1; p++)
+            for (var v : this.ByStart.get(p))
+            {
+                fromStart[v] = p == 0 || Utilities.anyTrue(this.ByEnd.get(p - 1), u -> fromStart[u]);
+                if (fromStart[v])
+                    maxOutIndex = Math.max(maxOutIndex, this.Words.get(v).End);
+            }
+        var minInIndex = this.Length;
+        for (var p = this.Length - 1; p >= 0; p--)
+            for (var v : this.ByEnd.get(p))
+            {
+                toEnd[v] = p == this.Length - 1 || Utilities.anyTrue(this.ByStart.get(p + 1), u -> toEnd[u]);
+                var start = this.Words.get(v).Start;
+                if (toEnd[v] && start > maxOutIndex)
+                    minInIndex = Math.min(minInIndex, start);
+            }
+        return new int[]{maxOutIndex + 1, minInIndex - 1};
+    }
+}
@@ -0,0 +1,119 @@
+package vietnameseanalyzer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * cây tiền tố theo âm tiết của các từ trong WordAppearances, mỗi nút ứng với một dãy âm tiết,
+ * nút kết thúc một từ giữ từ đó và các kiểu từ loại của nó; nút gốc có mã 0
+ */
+public final class Lexicon
+{
+    private final SymbolTable Syllables = new SymbolTable();
+    /**
+     * khóa là mã nút cha và mã âm tiết, giá trị là mã nút con, 0 nghĩa là chưa có vì không nút nào trỏ về gốc
+     */
+    private final LongIntCounter Children = new LongIntCounter();
+    private final ArrayList<String> NodeWords = new ArrayList<>();
+    private final ArrayList<ArrayList<String>> NodeTypes = new ArrayList<>();
+
+    /**
+     * @param wordAppearances cấu trúc là word->type->counter, các từ có khoảng trắng thừa
+     *                        hoặc khoảng trắng khác dấu cách bị bỏ qua vì không thể khớp với câu đã tách
+     */
+    public Lexicon(HashMap<String, HashMap<String, Integer>> wordAppearances)
+    {
+        this.NodeWords.add(null);
+        this.NodeTypes.add(null);
+        for (var word : wordAppearances.keySet())
+        {
+            var syllables = word.split("\\s", -1);
+            if (!String.join(" ", syllables).equals(word))
+                continue;
+            var node = 0;
+            for (var syllable : syllables)
+            {
+                if (syllable.length() == 0)
+                {
+                    node = -1;
+                    break;
+                }
+                node = child(node, this.Syllables.intern(syllable), true);
+            }
+            if (node == -1)
+                continue;
+            this.NodeWords.set(node, word);
+            this.NodeTypes.set(node, new ArrayList<>(wordAppearances.get(word).keySet()));
+        }
+    }
+
+    private static long edgeKey(int node, int syllable)
+    {
+        return ((long) node << 32) | syllable;
+    }
+
+    private int child(int node, int syllable, boolean create)
+    {
+        var key = edgeKey(node, syllable);
+        var res = this.Children.get(key);
+        if (res != 0 || !create)
+            return res;
+        res = this.NodeWords.size();
+        this.NodeWords.add(null);
+        this.NodeTypes.add(null);
+        this.Children.add(key, res);
+        return res;
+    }
+
+    /**
+     * các từ của từ điển bắt đầu tại âm tiết start, mỗi kiểu của từ cho một SegmentWord,
+     * chỉ đi theo cây từ start đến khi không còn nút con nên không phải ghép chuỗi cho từng đoạn
+     *
+     * @param syllables
+     * @param start
+     * @return
+     */
+    public ArrayList<SegmentWord> wordsStartingAt(List<String> syllables, int start)
+    {
+        var res = new ArrayList<SegmentWord>();
+        var node = 0;
+        for (var end = start; end <= syllables.size() - 1; end++)
+        {
+            var syllable = this.Syllables.getId(syllables.get(end));
+            if (syllable == -1)
+                break;
+            node = child(node, syllable, false);
+            if (node == 0)
+                break;
+            var word = this.NodeWords.get(node);
+            if (word != null)
+                for (var type : this.NodeTypes.get(node))
+                    res.add(new SegmentWord(word, type, start, end));
+        }
+        return res;
+    }
+
+    public boolean containsWord(List<String> syllables)
+    {
+        var node = 0;
+        for (var syllable : syllables)
+        {
+            var id = this.Syllables.getId(syllable);
+            if (id == -1)
+                return false;
+            node = child(node, id, false);
+            if (node == 0)
+                return false;
+        }
+        return this.NodeWords.get(node) != null;
+    }
+
+    /**
+     * @return số nút của cây, kể cả gốc
+     */
+    public int size()
+    {
+        return this.NodeWords.size();
+    }
+}
@@ -0,0 +1,112 @@
+package vietnameseanalyzer;
+
+/**
+ * bộ đếm với khóa là một số long (thường là các mã số được gói lại) và giá trị là số int,
+ * dùng địa chỉ mở trên các mảng nguyên thủy nên không tạo Long, Integer khi cộng hay tra cứu
+ */
+public final class LongIntCounter
+{
+    private long[] Keys;
+    private int[] Values;
+    private boolean[] Used;
+    private int Size = 0;
+
+    public LongIntCounter()
+    {
+        this(16);
+    }
+
+    public LongIntCounter(int expectedSize)
+    {
+        var capacity = 16;
+        while (capacity < 2 * expectedSize)
+            capacity <<= 1;
+        this.Keys = new long[capacity];
+        this.Values = new int[capacity];
+        this.Used = new boolean[capacity];
+    }
+
+    private static int hash(long key)
+    {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int slot(long key)
+    {
+        var mask = this.Keys.length - 1;
+        var i = hash(key) & mask;
+        while (this.Used[i] && this.Keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * cộng delta vào giá trị của key, key chưa có được coi là 0
+     *
+     * @param key
+     * @param delta
+     */
+    public void add(long key, int delta)
+    {
+        var i = slot(key);
+        if (this.Used[i])
+        {
+            this.Values[i] += delta;
+            return;
+        }
+        this.Used[i] = true;
+        this.Keys[i] = key;
+        this.Values[i] = delta;
+        this.Size++;
+        if (2 * this.Size > this.Keys.length)
+            grow();
+    }
+
+    /**
+     * @param key
+     * @return giá trị của key hoặc 0 nếu key chưa có
+     */
+    public int get(long key)
+    {
+        var i = slot(key);
+        return this.Used[i] ? this.Values[i] : 0;
+    }
+
+    public boolean containsKey(long key)
+    {
+        return this.Used[slot(key)];
+    }
+
+    public int size()
+    {
+        return this.Size;
+    }
+
+    public void addAll(LongIntCounter other)
+    {
+        for (var i = 0; i <= other.Keys.length - 1; i++)
+            if (other.Used[i])
+                add(other.Keys[i], other.Values[i]);
+    }
+
+    private void grow()
+    {
+        var keys = this.Keys;
+        var values = this.Values;
+        var used = this.Used;
+        this.Keys = new long[2 * keys.length];
+        this.Values = new int[2 * keys.length];
+        this.Used = new boolean[2 * keys.length];
+        for (var i = 0; i <= keys.length - 1; i++)
+            if (used[i])
+            {
+                var j = slot(keys[i]);
+                this.Used[j] = true;
+                this.Keys[j] = keys[i];
+                this.Values[j] = values[i];
+            }
+    }
+}
@@ -0,0 +1,314 @@
+package vietnameseanalyzer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * các bảng hay được tra cứu khi phân tích câu được đánh lại khóa bằng mã số của từ và kiểu từ loại
+ * gói trong một số long, nhờ vậy mỗi lần tra cứu không phải tạo danh sách {từ, kiểu} mới;
+ * các tổng theo kiểu tương tự được cộng sẵn theo lớp kiểu của ReducedTypeMap
+ */
+public final class ModelIndex
+{
+    /**
+     * mã kiểu và mã lớp kiểu được gói trong 12 bit
+     */
+    private static final int MaxTypes = 1 << 12;
+
+    public final SymbolTable Words = new SymbolTable();
+    public final SymbolTable Types = new SymbolTable();
+    /**
+     * mỗi lớp kiểu được đặt tên theo kiểu đại diện của nó trong ReducedTypeMap
+     */
+    private final SymbolTable TypeClasses = new SymbolTable();
+    /**
+     * TypeClassIds[mã kiểu] là mã lớp của kiểu đó
+     */
+    private final int[] TypeClassIds;
+
+    private final Object EdgeCounterSource;
+    private final Object TernaryLocalsSource;
+    private final Object CloseSeparationSource;
+    private final Object CloseCounterSource;
+    private final Object NextTypesSource;
+    private final Object BeforeTypesSource;
+    private final Object WordAppearancesSource;
+    private final HashMap<String, String> ReducedTypeMap;
+    private final String NTypeClass;
+
+    private final LongIntCounter ConnectionWeights = new LongIntCounter();
+    private final LongIntCounter NextTypeWeights = new LongIntCounter();
+    private final LongIntCounter BeforeTypeWeights = new LongIntCounter();
+    private final HashSet<Long> TernaryLocalKeys = new HashSet<>();
+    private final HashMap<Long, String> CloseSeparations = new HashMap<>();
+    private final HashMap<Long, Double> CloseMeans = new HashMap<>();
+    private final Lexicon Lexicon;
+
+    /**
+     * các bảng null được bỏ qua
+     *
+     * @param edgeCounter     cấu trúc là {word, type}->incoming/outcoming->direction->type->counter
+     * @param ternaryLocals   cấu trúc là indices->types->counter
+     * @param closeSeparation cấu trúc là {type0, type1}->closed/separated
+     * @param closeCounter    cấu trúc là {type0, type1}->mean
+     * @param nextTypes       cấu trúc là word->type->type của từ đứng sau->counter
+     * @param beforeTypes     cấu trúc là word->type->type của từ đứng trước->counter
+     * @param wordAppearances cấu trúc là word->type->counter
+     * @param reducedTypeMap  type->kiểu đại diện cho các kiểu tương tự với nó, kiểu không có trong bảng là một lớp riêng,
+     *                        trừ các kiểu bắt đầu bằng N thuộc cùng lớp với N như trong isSimilarType
+     */
+    public ModelIndex(HashMap<ArrayList<String>, HashMap<String, HashMap<String, HashMap<String, Integer>>>> edgeCounter,
+                      HashMap<ArrayList<Integer>, HashMap<ArrayList<String>, Integer>> ternaryLocals,
+                      HashMap<ArrayList<String>, String> closeSeparation,
+                      HashMap<ArrayList<String>, Double> closeCounter,
+                      HashMap<String, HashMap<String, HashMap<String, Integer>>> nextTypes,
+                      HashMap<String, HashMap<String, HashMap<String, Integer>>> beforeTypes,
+                      HashMap<String, HashMap<String, Integer>> wordAppearances,
+                      HashMap<String, String> reducedTypeMap)
+    {
+        this.EdgeCounterSource = edgeCounter;
+        this.TernaryLocalsSource = ternaryLocals;
+        this.CloseSeparationSource = closeSeparation;
+        this.CloseCounterSource = closeCounter;
+        this.NextTypesSource = nextTypes;
+        this.BeforeTypesSource = beforeTypes;
+        this.WordAppearancesSource = wordAppearances;
+        this.ReducedTypeMap = reducedTypeMap;
+        this.NTypeClass = findNTypeClass(reducedTypeMap);
+        this.Lexicon = wordAppearances != null ? new Lexicon(wordAppearances) : null;
+        if (edgeCounter != null)
+            for (var pair : edgeCounter.keySet())
+            {
+                var word = this.Words.intern(pair.get(0));
+                var type = internType(pair.get(1));
+                var byLoc = edgeCounter.get(pair);
+                for (var loc : byLoc.keySet())
+                    for (var dir : byLoc.get(loc).keySet())
+                    {
+                        var counter = byLoc.get(loc).get(dir);
+                        for (var otherType : counter.keySet())
+                        {
+                            var key = connectionKey(word, type, loc.equals("incoming"), dir.equals("next"),
+                                    internTypeClass(otherType));
+                            this.ConnectionWeights.add(key, counter.get(otherType));
+                        }
+                    }
+            }
+        addConnectingTypes(this.NextTypeWeights, nextTypes);
+        addConnectingTypes(this.BeforeTypeWeights, beforeTypes);
+        if (ternaryLocals != null)
+            for (var indices : ternaryLocals.keySet())
+                for (var types : ternaryLocals.get(indices).keySet())
+                {
+                    var n = indices.size();
+                    var t0 = internType(types.get(0));
+                    var t1 = internType(types.get(1));
+                    var t2 = n == 3 ? internType(types.get(2)) : 0;
+                    this.TernaryLocalKeys.add(localKey(n, indices.get(0), indices.get(1), n == 3 ? indices.get(2) : 0,
+                            t0, t1, t2));
+                }
+        if (closeSeparation != null)
+            for (var pair : closeSeparation.keySet())
+                this.CloseSeparations.put(pairKey(internType(pair.get(0)), internType(pair.get(1))),
+                        closeSeparation.get(pair));
+        if (closeCounter != null)
+            for (var pair : closeCounter.keySet())
+                this.CloseMeans.put(pairKey(internType(pair.get(0)), internType(pair.get(1))),
+                        closeCounter.get(pair));
+        this.TypeClassIds = new int[this.Types.size()];
+        for (var i = 0; i <= this.TypeClassIds.length - 1; i++)
+            this.TypeClassIds[i] = internTypeClass(this.Types.getSymbol(i));
+    }
+
+    private void addConnectingTypes(LongIntCounter weights,
+                                    HashMap<String, HashMap<String, HashMap<String, Integer>>> connectingTypes)
+    {
+        if (connectingTypes == null)
+            return;
+        for (var word : connectingTypes.keySet())
+        {
+            var wordId = this.Words.intern(word);
+            var byType = connectingTypes.get(word);
+            for (var type : byType.keySet())
+            {
+                var typeId = internType(type);
+                var counter = byType.get(type);
+                for (var otherType : counter.keySet())
+                    weights.add(connectionKey(wordId, typeId, false, false, internTypeClass(otherType)),
+                            counter.get(otherType));
+            }
+        }
+    }
+
+    public boolean isBuiltFrom(Object edgeCounter, Object ternaryLocals, Object closeSeparation, Object closeCounter,
+                               Object nextTypes, Object beforeTypes, Object wordAppearances, Object reducedTypeMap)
+    {
+        return this.EdgeCounterSource == edgeCounter && this.TernaryLocalsSource == ternaryLocals
+                && this.CloseSeparationSource == closeSeparation && this.CloseCounterSource == closeCounter
+                && this.NextTypesSource == nextTypes && this.BeforeTypesSource == beforeTypes
+                && this.WordAppearancesSource == wordAppearances && this.ReducedTypeMap == reducedTypeMap;
+    }
+
+    /**
+     * @return cây tiền tố của WordAppearances hoặc null nếu chưa có WordAppearances
+     */
+    public Lexicon getLexicon()
+    {
+        return this.Lexicon;
+    }
+
+    private int internType(String type)
+    {
+        var res = this.Types.intern(type);
+        if (res >= MaxTypes)
+            throw new RuntimeException("too many types for model index");
+        return res;
+    }
+
+    /**
+     * @param reducedTypeMap
+     * @return kiểu đại diện của lớp các kiểu bắt đầu bằng N, là N nếu bảng không có kiểu nào như vậy
+     */
+    private static String findNTypeClass(HashMap<String, String> reducedTypeMap)
+    {
+        if (reducedTypeMap != null)
+            for (var type : reducedTypeMap.keySet())
+                if (type.startsWith("N"))
+                    return reducedTypeMap.get(type);
+        return "N";
+    }
+
+    private String reducedType(String type)
+    {
+        var res = this.ReducedTypeMap != null ? this.ReducedTypeMap.get(type) : null;
+        if (res != null)
+            return res;
+        if (type.startsWith("N"))
+            return this.NTypeClass;
+        return type;
+    }
+
+    private int internTypeClass(String type)
+    {
+        internType(type);
+        return this.TypeClasses.intern(reducedType(type));
+    }
+
+    /**
+     * @param type
+     * @return mã lớp của type hoặc -1 nếu không có kiểu nào của lớp đó trong các bảng
+     */
+    private int getTypeClass(String type)
+    {
+        var typeId = this.Types.getId(type);
+        if (typeId != -1)
+            return this.TypeClassIds[typeId];
+        return this.TypeClasses.getId(reducedType(type));
+    }
+
+    private static long connectionKey(int word, int type, boolean incoming, boolean next, int otherTypeClass)
+    {
+        return ((long) word << 26) | ((long) type << 14) | ((incoming ? 1L : 0L) << 13) | ((next ? 1L : 0L) << 12)
+                | otherTypeClass;
+    }
+
+    private static long localKey(int n, int r0, int r1, int r2, int t0, int t1, int t2)
+    {
+        return ((long) n << 60) | ((long) (r0 * 9 + r1 * 3 + r2) << 48) | ((long) t0 << 32) | ((long) t1 << 16) | t2;
+    }
+
+    private static long pairKey(int t0, int t1)
+    {
+        return ((long) t0 << 32) | t1;
+    }
+
+    /**
+     * tổng số lần {word, type} được nối theo hướng loc, direction đến một từ có kiểu tương tự otherType,
+     * giống với tổng trong getTreeWeight
+     */
+    public int getConnectionWeight(String word, String type, boolean incoming, boolean next, String otherType)
+    {
+        return getWeight(this.ConnectionWeights, word, type, incoming, next, otherType);
+    }
+
+    /**
+     * tổng số lần {word, type} đứng ngay trước một từ có kiểu tương tự otherType theo NextTypes
+     */
+    public int getNextTypeWeight(String word, String type, String otherType)
+    {
+        return getWeight(this.NextTypeWeights, word, type, false, false, otherType);
+    }
+
+    /**
+     * tổng số lần {word, type} đứng ngay sau một từ có kiểu tương tự otherType theo BeforeTypes
+     */
+    public int getBeforeTypeWeight(String word, String type, String otherType)
+    {
+        return getWeight(this.BeforeTypeWeights, word, type, false, false, otherType);
+    }
+
+    private int getWeight(LongIntCounter weights, String word, String type, boolean incoming, boolean next,
+                          String otherType)
+    {
+        var wordId = this.Words.getId(word);
+        var typeId = this.Types.getId(type);
+        if (wordId == -1 || typeId == -1)
+            return 0;
+        var otherClass = getTypeClass(otherType);
+        if (otherClass == -1)
+            return 0;
+        return weights.get(connectionKey(wordId, typeId, incoming, next, otherClass));
+    }
+
+    private static int rank(int loc, int loc0, int loc1, int loc2, int n)
+    {
+        var res = 0;
+        if (loc0 < loc)
+            res++;
+        if (loc1 < loc)
+            res++;
+        if (n == 3 && loc2 < loc)
+            res++;
+        return res;
+    }
+
+    /**
+     * giống với việc kiểm tra TernaryLocals có khóa simplifyIndices(locations) và types của các đỉnh
+     */
+    public boolean isTernaryLocal(WordVertex v0, WordVertex v1, WordVertex v2)
+    {
+        var n = v2 == null ? 2 : 3;
+        var t0 = this.Types.getId(v0.Type);
+        var t1 = this.Types.getId(v1.Type);
+        var t2 = n == 3 ? this.Types.getId(v2.Type) : 0;
+        if (t0 == -1 || t1 == -1 || t2 == -1)
+            return false;
+        var loc2 = n == 3 ? v2.Location : 0;
+        var r0 = rank(v0.Location, v0.Location, v1.Location, loc2, n);
+        var r1 = rank(v1.Location, v0.Location, v1.Location, loc2, n);
+        var r2 = n == 3 ? rank(loc2, v0.Location, v1.Location, loc2, n) : 0;
+        return this.TernaryLocalKeys.contains(localKey(n, r0, r1, r2, t0, t1, t2));
+    }
+
+    /**
+     * @return closed, separated hoặc null nếu cặp kiểu không có trong CloseSeparation
+     */
+    public String getCloseSeparation(String type0, String type1)
+    {
+        var t0 = this.Types.getId(type0);
+        var t1 = this.Types.getId(type1);
+        if (t0 == -1 || t1 == -1)
+            return null;
+        return this.CloseSeparations.get(pairKey(t0, t1));
+    }
+
+    public Double getCloseMean(String type0, String type1)
+    {
+        var t0 = this.Types.getId(type0);
+        var t1 = this.Types.getId(type1);
+        if (t0 == -1 || t1 == -1)
+            return null;
+        return this.CloseMeans.get(pairKey(t0, t1));
+    }
+}
@@ -0,0 +1,230 @@
+package vietnameseanalyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+/**
+ * tệp nhị phân lưu các bảng thống kê đã được tính từ kho dữ liệu huấn luyện,
+ * cấu trúc là magic, version, số bảng rồi đến từng cặp tên bảng->giá trị
+ */
+public class ModelSnapshot
+{
+    public static final int Magic = 0x56414D53;
+    public static final int Version = 1;
+
+    private static final byte NullTag = 0;
+    private static final byte StringTag = 1;
+    private static final byte IntegerTag = 2;
+    private static final byte DoubleTag = 3;
+    private static final byte BooleanTag = 4;
+    private static final byte ListTag = 5;
+    private static final byte MapTag = 6;
+    private static final byte SetTag = 7;
+    private static final byte EdgeVertexTag = 8;
+    private static final byte LeastSquaresTag = 9;
+
+    public static void write(Path path, LinkedHashMap<String, Object> tables)
+    {
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path))))
+        {
+            out.writeInt(Magic);
+            out.writeInt(Version);
+            out.writeInt(tables.size());
+            for (var name : tables.keySet())
+            {
+                out.writeUTF(name);
+                writeValue(out, tables.get(name));
+            }
+        } catch (IOException e)
+        {
+            throw new RuntimeException("unable to write model snapshot " + path + ": " + e.getMessage());
+        }
+    }
+
+    public static LinkedHashMap<String, Object> read(Path path)
+    {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))))
+        {
+            if (in.readInt() != Magic)
+                throw new RuntimeException(path + " is not a model snapshot");
+            var version = in.readInt();
+            if (version != Version)
+                throw new RuntimeException("unsupported model snapshot version " + version);
+            var res = new LinkedHashMap<String, Object>();
+            var size = in.readInt();
+            for (var i = 0; i <= size - 1; i++)
+            {
+                var name = in.readUTF();
+                res.put(name, readValue(in));
+            }
+            return res;
+        } catch (IOException e)
+        {
+            throw new RuntimeException("unable to read model snapshot " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException
+    {
+        if (value == null)
+            out.writeByte(NullTag);
+        else if (value instanceof String)
+        {
+            out.writeByte(StringTag);
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer)
+        {
+            out.writeByte(IntegerTag);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double)
+        {
+            out.writeByte(DoubleTag);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean)
+        {
+            out.writeByte(BooleanTag);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof ArrayList)
+        {
+            var list = (ArrayList<?>) value;
+            out.writeByte(ListTag);
+            out.writeInt(list.size());
+            for (var ele : list)
+                writeValue(out, ele);
+        } else if (value instanceof HashMap)
+        {
+            var map = (HashMap<?, ?>) value;
+            out.writeByte(MapTag);
+            out.writeInt(map.size());
+            for (var key : map.keySet())
+            {
+                writeValue(out, key);
+                writeValue(out, map.get(key));
+            }
+        } else if (value instanceof HashSet)
+        {
+            var set = (HashSet<?>) value;
+            out.writeByte(SetTag);
+            out.writeInt(set.size());
+            for (var ele : set)
+                writeValue(out, ele);
+        } else if (value instanceof EdgeVertex)
+        {
+            var edV = (EdgeVertex) value;
+            out.writeByte(EdgeVertexTag);
+            writeValue(out, edV.Tail);
+            writeValue(out, edV.Head);
+            writeValue(out, edV.Direction);
+        } else if (value instanceof LeastSquares)
+        {
+            var lS = (LeastSquares) value;
+            out.writeByte(LeastSquaresTag);
+            writeValue(out, lS.Single);
+            out.writeDouble(lS.SingleVariance);
+            writeValue(out, lS.Left);
+            out.writeDouble(lS.LeftVariance);
+            writeValue(out, lS.Right);
+            out.writeDouble(lS.RightVariance);
+            writeValue(out, lS.Between);
+            out.writeDouble(lS.BetweenVariance);
+        } else throw new RuntimeException("unsupported snapshot value " + value.getClass().getName());
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException
+    {
+        var tag = in.readByte();
+        switch (tag)
+        {
+            case NullTag:
+                return null;
+            case StringTag:
+                return in.readUTF();
+            case IntegerTag:
+                return in.readInt();
+            case DoubleTag:
+                return in.readDouble();
+            case BooleanTag:
+                return in.readBoolean();
+            case ListTag:
+            {
+                var size = in.readInt();
+                var res = new ArrayList<Object>(size);
+                for (var i = 0; i <= size - 1; i++)
+                    res.add(readValue(in));
+                return res;
+            }
+            case MapTag:
+            {
+                var size = in.readInt();
+                var res = new HashMap<Object, Object>();
+                for (var i = 0; i <= size - 1; i++)
+                {
+                    var key = readValue(in);
+                    res.put(key, readValue(in));
+                }
+                return res;
+            }
+            case SetTag:
+            {
+                var size = in.readInt();
+                var res = new HashSet<Object>();
+                for (var i = 0; i <= size - 1; i++)
+                    res.add(readValue(in));
+                return res;
+            }
+            case EdgeVertexTag:
+            {
+                var tail = readStrings(in);
+                var head = readStrings(in);
+                var res = new EdgeVertex(tail, head);
+                res.Direction = (String) readValue(in);
+                return res;
+            }
+            case LeastSquaresTag:
+            {
+                var res = new LeastSquares();
+                res.Single = readDoubles(in);
+                res.SingleVariance = in.readDouble();
+                res.Left = readDoubles(in);
+                res.LeftVariance = in.readDouble();
+                res.Right = readDoubles(in);
+                res.RightVariance = in.readDouble();
+                res.Between = readDoubles(in);
+                res.BetweenVariance = in.readDouble();
+                return res;
+            }
+        }
+        throw new RuntimeException("corrupted model snapshot, unknown tag " + tag);
+    }
+
+    private static ArrayList<String> readStrings(DataInputStream in) throws IOException
+    {
+        var list = (ArrayList<?>) readValue(in);
+        if (list == null)
+            return null;
+        var res = new ArrayList<String>(list.size());
+        for (var ele : list)
+            res.add((String) ele);
+        return res;
+    }
+
+    private static ArrayList<Double> readDoubles(DataInputStream in) throws IOException
+    {
+        var list = (ArrayList<?>) readValue(in);
+        if (list == null)
+            return null;
+        var res = new ArrayList<Double>(list.size());
+        for (var ele : list)
+            res.add((Double) ele);
+        return res;
+    }
+}
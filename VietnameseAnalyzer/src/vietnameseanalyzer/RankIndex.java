@@ -0,0 +1,167 @@
+package vietnameseanalyzer;
+
+import com.trung.UnaryFunction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * các {word, type} của một bảng hạng (như VertexPR) được chia theo lớp kiểu (các kiểu bắt đầu bằng "N" chung một lớp,
+ * giống closestWord) và sắp theo hạng trong từng lớp, nhờ vậy tìm các từ có hạng gần một giá trị chỉ cần tìm nhị phân
+ * rồi đi ra hai phía; chỉ mục giữ bản sao các hạng lúc được tạo, nên được tạo một lần rồi dùng lại và phải
+ * tạo lại khi bảng hạng thay đổi
+ */
+public final class RankIndex
+{
+    private final HashMap<ArrayList<String>, Double> Ranks;
+    private final HashMap<String, double[]> Values = new HashMap<>();
+    private final HashMap<String, ArrayList<ArrayList<String>>> Words = new HashMap<>();
+
+    /**
+     * @param ranks cấu trúc là {word, type}->rank
+     */
+    public RankIndex(HashMap<ArrayList<String>, Double> ranks)
+    {
+        this.Ranks = new HashMap<>(ranks);
+        var groups = new HashMap<String, ArrayList<ArrayList<String>>>();
+        for (var word : ranks.keySet())
+            groups.computeIfAbsent(typeClass(word.get(1)), x -> new ArrayList<>()).add(word);
+        for (var typeClass : groups.keySet())
+        {
+            var words = groups.get(typeClass);
+            words.sort((x, y) -> Double.compare(ranks.get(x), ranks.get(y)));
+            var values = new double[words.size()];
+            for (var i = 0; i <= values.length - 1; i++)
+                values[i] = ranks.get(words.get(i));
+            this.Values.put(typeClass, values);
+            this.Words.put(typeClass, words);
+        }
+    }
+
+    /**
+     * @param word
+     * @return hạng của {word, type} lúc tạo chỉ mục hoặc null nếu không có
+     */
+    public Double getRank(ArrayList<String> word)
+    {
+        return this.Ranks.get(word);
+    }
+
+    private static String typeClass(String type)
+    {
+        return type.startsWith("N") ? "N" : type;
+    }
+
+    /**
+     * @return vị trí đầu tiên trong values có giá trị không nhỏ hơn value
+     */
+    private static int lowerBound(double[] values, double value)
+    {
+        var low = 0;
+        var high = values.length;
+        while (low < high)
+        {
+            var middle = (low + high) >>> 1;
+            if (values[middle] < value)
+                low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * các từ thỏa checkf cùng lớp kiểu với type có hạng gần value nhất, các từ cách đều value đều được trả về
+     *
+     * @param type
+     * @param value
+     * @param checkf
+     * @param storedDiff nhận khoảng cách nhỏ nhất hoặc null nếu không có từ nào
+     * @return
+     */
+    public ArrayList<ArrayList<String>> closest(String type, double value, UnaryFunction<ArrayList<String>, Boolean> checkf,
+                                                AtomicReference<Double> storedDiff)
+    {
+        storedDiff.set(null);
+        var typeClass = typeClass(type);
+        var values = this.Values.get(typeClass);
+        if (values == null)
+            return new ArrayList<>();
+        var words = this.Words.get(typeClass);
+        var right = lowerBound(values, value);
+        var leftRes = new ArrayList<ArrayList<String>>();
+        var leftDiff = collectClosest(values, words, right - 1, -1, value, Double.POSITIVE_INFINITY, checkf, leftRes);
+        var rightRes = new ArrayList<ArrayList<String>>();
+        var rightDiff = collectClosest(values, words, right, 1, value, leftDiff, checkf, rightRes);
+        ArrayList<ArrayList<String>> res;
+        if (leftDiff < rightDiff)
+            res = leftRes;
+        else if (rightDiff < leftDiff)
+            res = rightRes;
+        else
+        {
+            res = leftRes;
+            res.addAll(rightRes);
+        }
+        if (!res.isEmpty())
+            storedDiff.set(Math.min(leftDiff, rightDiff));
+        return res;
+    }
+
+    /**
+     * đi từ from theo bước step, gom các từ thỏa checkf có khoảng cách nhỏ nhất (không quá limit) vào res
+     *
+     * @return khoảng cách nhỏ nhất tìm được hoặc vô cùng nếu không có từ nào
+     */
+    private static double collectClosest(double[] values, ArrayList<ArrayList<String>> words, int from, int step,
+                                         double value, double limit, UnaryFunction<ArrayList<String>, Boolean> checkf,
+                                         ArrayList<ArrayList<String>> res)
+    {
+        var bestDiff = Double.POSITIVE_INFINITY;
+        for (var i = from; i >= 0 && i <= values.length - 1; i += step)
+        {
+            var diff = Math.abs(values[i] - value);
+            if (diff > limit || diff > bestDiff)
+                break;
+            var word = words.get(i);
+            if (checkf.apply(word))
+            {
+                bestDiff = diff;
+                res.add(word);
+            }
+        }
+        return bestDiff;
+    }
+
+    /**
+     * k từ thỏa checkf cùng lớp kiểu với type có hạng gần value nhất, sắp theo khoảng cách tăng dần
+     *
+     * @param type
+     * @param value
+     * @param k
+     * @param checkf
+     * @return
+     */
+    public ArrayList<ArrayList<String>> nearest(String type, double value, int k, UnaryFunction<ArrayList<String>, Boolean> checkf)
+    {
+        var res = new ArrayList<ArrayList<String>>();
+        var typeClass = typeClass(type);
+        var values = this.Values.get(typeClass);
+        if (values == null)
+            return res;
+        var words = this.Words.get(typeClass);
+        var right = lowerBound(values, value);
+        var left = right - 1;
+        while (res.size() < k && (left >= 0 || right <= values.length - 1))
+        {
+            int next;
+            if (right > values.length - 1 || (left >= 0 && value - values[left] <= values[right] - value))
+                next = left--;
+            else next = right++;
+            var word = words.get(next);
+            if (checkf.apply(word))
+                res.add(word);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,123 @@
+package vietnameseanalyzer;
+
+import com.trung.NullFunction;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * bộ nhớ đệm LRU từ đoạn câu (giữa hai dấu phẩy, đã chuẩn hóa) đến kết quả tách từ của nó,
+ * vị trí của các từ được giữ tương đối so với đầu đoạn và mỗi lần lấy ra là một bản sao
+ * nên người gọi có thể dời vị trí mà không làm hỏng bộ nhớ đệm
+ */
+public class SegmentationCache
+{
+    private final LinkedHashMap<String, SegmentWord[]> Entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int MaxSize;
+    /**
+     * tăng mỗi lần xóa, kết quả được tính trước lần xóa gần nhất không được đưa vào
+     */
+    private long Generation = 0;
+    private final AtomicLong Hits = new AtomicLong();
+    private final AtomicLong Misses = new AtomicLong();
+
+    public SegmentationCache(int maxSize)
+    {
+        this.MaxSize = maxSize;
+    }
+
+    /**
+     * @param syllables các âm tiết của đoạn
+     * @param segment   tách từ khi đoạn chưa có trong bộ nhớ đệm
+     * @return
+     */
+    public ArrayList<SegmentWord> get(ArrayList<String> syllables, NullFunction<ArrayList<SegmentWord>> segment)
+    {
+        var key = String.join(" ", syllables);
+        long generation;
+        synchronized (this)
+        {
+            var cached = this.Entries.get(key);
+            if (cached != null)
+            {
+                this.Hits.incrementAndGet();
+                return copy(cached);
+            }
+            generation = this.Generation;
+        }
+        this.Misses.incrementAndGet();
+        var res = segment.apply();
+        var stored = new SegmentWord[res.size()];
+        for (var i = 0; i <= stored.length - 1; i++)
+        {
+            var word = res.get(i);
+            stored[i] = new SegmentWord(word.Word, word.Type, word.Start, word.End);
+        }
+        synchronized (this)
+        {
+            if (generation == this.Generation && this.MaxSize > 0)
+            {
+                this.Entries.put(key, stored);
+                trim();
+            }
+        }
+        return res;
+    }
+
+    private static ArrayList<SegmentWord> copy(SegmentWord[] words)
+    {
+        var res = new ArrayList<SegmentWord>(words.length);
+        for (var word : words)
+            res.add(new SegmentWord(word.Word, word.Type, word.Start, word.End));
+        return res;
+    }
+
+    private void trim()
+    {
+        var iterator = this.Entries.entrySet().iterator();
+        while (this.Entries.size() > this.MaxSize && iterator.hasNext())
+        {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    public synchronized void clear()
+    {
+        this.Entries.clear();
+        this.Generation++;
+    }
+
+    public synchronized void setMaxSize(int maxSize)
+    {
+        this.MaxSize = maxSize;
+        trim();
+    }
+
+    public synchronized int getMaxSize()
+    {
+        return this.MaxSize;
+    }
+
+    public synchronized int size()
+    {
+        return this.Entries.size();
+    }
+
+    public long getHits()
+    {
+        return this.Hits.get();
+    }
+
+    public long getMisses()
+    {
+        return this.Misses.get();
+    }
+
+    public void resetCounters()
+    {
+        this.Hits.set(0);
+        this.Misses.set(0);
+    }
+}
@@ -0,0 +1,182 @@
+package vietnameseanalyzer;
+
+import java.util.ArrayList;
+
+/**
+ * chuẩn hóa câu trong một lần duyệt: bỏ '?', '.', gộp các dấu cách liền nhau, bỏ dấu cách trước dấu phẩy,
+ * gộp các dấu phẩy liền nhau, thêm dấu cách sau dấu phẩy và bỏ dấu cách, dấu phẩy ở hai đầu;
+ * các đoạn giữa hai dấu phẩy được giữ dưới dạng vị trí trong bộ đệm chứ không tách thành chuỗi con
+ */
+public class SentenceNormalizer
+{
+    private final char[] Chars;
+    private final int Length;
+    private final int[] ChunkStarts;
+    private final int[] ChunkEnds;
+
+    private SentenceNormalizer(char[] chars, int length, int[] chunkStarts, int[] chunkEnds)
+    {
+        this.Chars = chars;
+        this.Length = length;
+        this.ChunkStarts = chunkStarts;
+        this.ChunkEnds = chunkEnds;
+    }
+
+    /**
+     * giống [ \t\n\x0B\f\r] của \\s
+     */
+    private static boolean isWhitespace(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    public static SentenceNormalizer normalize(CharSequence sentence)
+    {
+        var n = sentence.length();
+        // mỗi dấu phẩy có thể thêm một dấu cách nên bộ đệm không quá 2n
+        var out = new char[2 * n];
+        var length = 0;
+        var commaCount = 0;
+        // trạng thái của dãy dấu cách, dấu phẩy đang đọc: dãy có dấu phẩy không, có dấu cách không
+        var inRun = false;
+        var runComma = false;
+        var runSpace = false;
+        for (var i = 0; i <= n - 1; i++)
+        {
+            var c = sentence.charAt(i);
+            if (c == '?' || c == '.')
+                continue;
+            if (c == ' ' || c == ',')
+            {
+                inRun = true;
+                if (c == ',')
+                {
+                    runComma = true;
+                    runSpace = false;
+                } else runSpace = true;
+                continue;
+            }
+            if (inRun)
+            {
+                // dãy ở đầu câu bị bỏ
+                if (length > 0)
+                {
+                    if (runComma)
+                    {
+                        out[length++] = ',';
+                        out[length++] = ' ';
+                        commaCount++;
+                    } else if (runSpace)
+                        out[length++] = ' ';
+                }
+                inRun = false;
+                runComma = false;
+                runSpace = false;
+            }
+            out[length++] = c;
+        }
+        var chunkStarts = new int[commaCount + 1];
+        var chunkEnds = new int[commaCount + 1];
+        var chunk = 0;
+        chunkStarts[0] = 0;
+        for (var i = 0; i <= length - 1; i++)
+            if (out[i] == ',')
+            {
+                chunkEnds[chunk] = i;
+                chunk++;
+                chunkStarts[chunk] = i + 1;
+            }
+        chunkEnds[chunk] = length;
+        return new SentenceNormalizer(out, length, chunkStarts, chunkEnds);
+    }
+
+    /**
+     * gộp các dấu cách liền nhau và bỏ dấu cách ở hai đầu
+     *
+     * @param word
+     * @return
+     */
+    public static String normalizeWord(CharSequence word)
+    {
+        var n = word.length();
+        var out = new char[n];
+        var length = 0;
+        var pendingSpace = false;
+        for (var i = 0; i <= n - 1; i++)
+        {
+            var c = word.charAt(i);
+            if (c == ' ')
+            {
+                pendingSpace = length > 0;
+                continue;
+            }
+            if (pendingSpace)
+            {
+                out[length++] = ' ';
+                pendingSpace = false;
+            }
+            out[length++] = c;
+        }
+        return new String(out, 0, length);
+    }
+
+    public int chunkCount()
+    {
+        return this.ChunkStarts.length;
+    }
+
+    public int getChunkStart(int chunk)
+    {
+        return this.ChunkStarts[chunk];
+    }
+
+    public int getChunkEnd(int chunk)
+    {
+        return this.ChunkEnds[chunk];
+    }
+
+    /**
+     * các âm tiết của đoạn, giống split("\\s") rồi bỏ các chuỗi rỗng
+     *
+     * @param chunk
+     * @return
+     */
+    public ArrayList<String> getSyllables(int chunk)
+    {
+        return splitSyllables(this.Chars, this.ChunkStarts[chunk], this.ChunkEnds[chunk]);
+    }
+
+    /**
+     * giống split("\\s") rồi bỏ các chuỗi rỗng, không chuẩn hóa gì thêm
+     *
+     * @param text
+     * @return
+     */
+    public static ArrayList<String> splitSyllables(String text)
+    {
+        return splitSyllables(text.toCharArray(), 0, text.length());
+    }
+
+    private static ArrayList<String> splitSyllables(char[] chars, int from, int to)
+    {
+        var res = new ArrayList<String>();
+        var start = -1;
+        for (var i = from; i <= to; i++)
+        {
+            if (i == to || isWhitespace(chars[i]))
+            {
+                if (start != -1)
+                    res.add(new String(chars, start, i - start));
+                start = -1;
+            } else if (start == -1)
+                start = i;
+        }
+        return res;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new String(this.Chars, 0, this.Length);
+    }
+}
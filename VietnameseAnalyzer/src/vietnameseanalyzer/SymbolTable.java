@@ -0,0 +1,44 @@
+package vietnameseanalyzer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * gán cho mỗi chuỗi (từ hoặc kiểu từ loại) một mã số nguyên liên tiếp bắt đầu từ 0
+ */
+public final class SymbolTable
+{
+    private final HashMap<String, Integer> Ids = new HashMap<>();
+    private final ArrayList<String> Symbols = new ArrayList<>();
+
+    public int intern(String symbol)
+    {
+        var id = this.Ids.get(symbol);
+        if (id != null)
+            return id;
+        id = this.Symbols.size();
+        this.Symbols.add(symbol);
+        this.Ids.put(symbol, id);
+        return id;
+    }
+
+    /**
+     * @param symbol
+     * @return mã của symbol hoặc -1 nếu symbol chưa có trong bảng
+     */
+    public int getId(String symbol)
+    {
+        var id = this.Ids.get(symbol);
+        return id == null ? -1 : id;
+    }
+
+    public String getSymbol(int id)
+    {
+        return this.Symbols.get(id);
+    }
+
+    public int size()
+    {
+        return this.Symbols.size();
+    }
+}
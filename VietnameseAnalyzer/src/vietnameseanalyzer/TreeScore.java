@@ -0,0 +1,45 @@
+package vietnameseanalyzer;
+
+import com.trung.Utilities;
+
+import java.util.ArrayList;
+
+/**
+ * điểm của một cây dùng để so sánh giống errorTreeCompare: ít vi phạm hơn, rồi vector lỗi (theo thứ tự
+ * ErrorPropertyImportance) nhỏ hơn theo thứ tự từ điển, rồi trọng số lớn hơn thì tốt hơn;
+ * mỗi cây chỉ cần được đánh giá một lần rồi so sánh nhiều lần
+ */
+public final class TreeScore implements Comparable<TreeScore>
+{
+    public final int Violations;
+    /**
+     * null nếu lỗi không được xét
+     */
+    public final ArrayList<Double> Errors;
+    public final double Weight;
+
+    public TreeScore(int violations, ArrayList<Double> errors, double weight)
+    {
+        this.Violations = violations;
+        this.Errors = errors;
+        this.Weight = weight;
+    }
+
+    /**
+     * @param other
+     * @return số âm nếu cây này tốt hơn other
+     */
+    @Override
+    public int compareTo(TreeScore other)
+    {
+        if (this.Violations != other.Violations)
+            return this.Violations < other.Violations ? -1 : 1;
+        if (this.Errors != null && other.Errors != null)
+        {
+            var order = Utilities.lexicographicOrder(this.Errors, other.Errors, (x, y) -> x - y);
+            if (order != 0)
+                return order;
+        }
+        return this.Weight < other.Weight ? 1 : (this.Weight > other.Weight ? -1 : 0);
+    }
+}
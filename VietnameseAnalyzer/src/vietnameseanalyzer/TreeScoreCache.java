@@ -0,0 +1,88 @@
+package vietnameseanalyzer;
+
+import com.trung.NullFunction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * bộ nhớ đệm điểm của các cây trong một câu (số vi phạm, vector lỗi, trọng số), khóa là dạng chuẩn của cây;
+ * chỉ dùng trong một luồng và bị bỏ khi câu được phân tích xong
+ */
+public class TreeScoreCache
+{
+    /**
+     * tổng số lần trúng, trượt của mọi bộ nhớ đệm
+     */
+    public static final AtomicLong TotalHits = new AtomicLong();
+    public static final AtomicLong TotalMisses = new AtomicLong();
+
+    private final SymbolTable Words = new SymbolTable();
+    private final SymbolTable Types = new SymbolTable();
+    private final HashMap<TreeSignature, Integer> Violations = new HashMap<>();
+    private final HashMap<TreeSignature, ArrayList<Double>> Errors = new HashMap<>();
+    private final HashMap<TreeSignature, Double> Weights = new HashMap<>();
+    private long Hits = 0;
+    private long Misses = 0;
+
+    /**
+     * @param tree cây đã bỏ các cạnh bổ sung nghĩa và các đỉnh cô lập
+     * @return
+     */
+    public TreeSignature getSignature(HeadTree tree)
+    {
+        var n = tree.size();
+        var values = new int[4 * n];
+        for (var i = 0; i <= n - 1; i++)
+        {
+            var v = tree.getVertex(i);
+            values[4 * i] = v.Location;
+            values[4 * i + 1] = this.Types.intern(v.Type);
+            values[4 * i + 2] = this.Words.intern(v.Word);
+            values[4 * i + 3] = tree.getHead(i);
+        }
+        return new TreeSignature(values);
+    }
+
+    private <T> T get(HashMap<TreeSignature, T> map, TreeSignature signature, NullFunction<T> compute)
+    {
+        var res = map.get(signature);
+        if (res != null)
+        {
+            this.Hits++;
+            TotalHits.incrementAndGet();
+            return res;
+        }
+        this.Misses++;
+        TotalMisses.incrementAndGet();
+        res = compute.apply();
+        map.put(signature, res);
+        return res;
+    }
+
+    public int getViolations(TreeSignature signature, NullFunction<Integer> compute)
+    {
+        return get(this.Violations, signature, compute);
+    }
+
+    public ArrayList<Double> getErrors(TreeSignature signature, NullFunction<ArrayList<Double>> compute)
+    {
+        return get(this.Errors, signature, compute);
+    }
+
+    public double getWeight(TreeSignature signature, NullFunction<Double> compute)
+    {
+        return get(this.Weights, signature, compute);
+    }
+
+    public long getHits()
+    {
+        return this.Hits;
+    }
+
+    public long getMisses()
+    {
+        return this.Misses;
+    }
+}
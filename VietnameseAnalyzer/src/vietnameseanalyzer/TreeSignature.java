@@ -0,0 +1,42 @@
+package vietnameseanalyzer;
+
+import java.util.Arrays;
+
+/**
+ * dạng chuẩn của một cây trong một câu: với mỗi đỉnh theo thứ tự của HeadTree là (vị trí, mã kiểu, mã từ,
+ * chỉ số đỉnh cha), được băm thành một số long; hai cây có cùng dạng chuẩn thì có cùng điểm
+ */
+public final class TreeSignature
+{
+    private final int[] Values;
+    public final long Hash;
+
+    public TreeSignature(int[] values)
+    {
+        this.Values = values;
+        var hash = 0xcbf29ce484222325L;
+        for (var value : values)
+        {
+            hash ^= value;
+            hash *= 0x100000001b3L;
+        }
+        this.Hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof TreeSignature))
+            return false;
+        var other = (TreeSignature) obj;
+        return this.Hash == other.Hash && Arrays.equals(this.Values, other.Values);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return (int) (this.Hash ^ (this.Hash >>> 32));
+    }
+}
@@ -0,0 +1,277 @@
+package vietnameseanalyzer;
+
+import com.trung.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * kho dữ liệu huấn luyện đã được phân tích sẵn, mỗi từ của câu được lưu thành các cột số nguyên
+ * (vị trí, mã từ, mã kiểu, chỉ số từ được nối đến trong câu) thay vì các dòng chuỗi,
+ * cây của một câu chỉ được tạo ra khi cần
+ */
+public class Treebank implements Iterable<Graph<WordVertex>>
+{
+    private final ArrayList<String> Words = new ArrayList<>();
+    private final HashMap<String, Integer> WordIds = new HashMap<>();
+    private final ArrayList<String> Types = new ArrayList<>();
+    private final HashMap<String, Integer> TypeIds = new HashMap<>();
+
+    private int[] Locations = new int[1024];
+    private int[] WordColumn = new int[1024];
+    private int[] TypeColumn = new int[1024];
+    /**
+     * chỉ số trong câu của từ được nối đến, -1 nếu dòng này không tạo ra cạnh nào
+     */
+    private int[] HeadColumn = new int[1024];
+    private int TokenCount = 0;
+
+    private int[] SentenceStarts = new int[]{0};
+    private int SentenceCount = 0;
+
+    public static Treebank of(ArrayList<ArrayList<ArrayList<String>>> parsers)
+    {
+        var res = new Treebank();
+        for (var parser : parsers)
+            res.addSentence(parser);
+        res.trim();
+        return res;
+    }
+
+    /**
+     * thêm một câu ở dạng các dòng {vị trí, từ, kiểu, vị trí từ được nối đến, ...},
+     * các dòng bị bỏ qua giống như trong VietnameseAnalyzer.getDependenceGraph
+     *
+     * @param parser
+     */
+    public void addSentence(ArrayList<ArrayList<String>> parser)
+    {
+        var length = parser.size();
+        var locations = new int[length];
+        var words = new String[length];
+        var types = new String[length];
+        var heads = new int[length];
+        for (var i = 0; i <= length - 1; i++)
+        {
+            var row = parser.get(i);
+            locations[i] = row.size() > 0 ? parseInt(row.get(0)) : Integer.MIN_VALUE;
+            words[i] = row.size() > 1 ? row.get(1) : null;
+            types[i] = row.size() > 2 ? row.get(2) : null;
+            heads[i] = row.size() > 3 ? parseInt(row.get(3)) : Integer.MIN_VALUE;
+        }
+        addSentence(length, locations, words, types, heads);
+    }
+
+    /**
+     * thêm một câu đã được tách thành các cột, words và types là chuỗi gốc trong vtb.txt hoặc null nếu dòng thiếu,
+     * locations và heads là Integer.MIN_VALUE nếu không đọc được, heads bắt đầu từ 1 như trong vtb.txt
+     */
+    public void addSentence(int length, int[] locations, String[] words, String[] types, int[] heads)
+    {
+        var start = this.TokenCount;
+        ensureTokenCapacity(start + length);
+        for (var i = 0; i <= length - 1; i++)
+        {
+            var k = start + i;
+            this.Locations[k] = -1;
+            this.WordColumn[k] = -1;
+            this.TypeColumn[k] = -1;
+            this.HeadColumn[k] = -1;
+            var word = words[i];
+            var type = types[i];
+            if (locations[i] == Integer.MIN_VALUE || word == null || type == null || !VietnameseAnalyzer.isValidWord(word))
+                continue;
+            if (!type.equals("Np"))
+                word = word.toLowerCase();
+            word = VietnameseAnalyzer.normalizeUnderscoredWord(word);
+            this.Locations[k] = locations[i];
+            this.WordColumn[k] = getId(word, this.Words, this.WordIds);
+            this.TypeColumn[k] = getId(type, this.Types, this.TypeIds);
+        }
+        this.TokenCount += length;
+        for (var i = 0; i <= length - 1; i++)
+        {
+            if (this.WordColumn[start + i] == -1 || heads[i] == Integer.MIN_VALUE)
+                continue;
+            var head = heads[i] - 1;
+            if (0 <= head && head <= length - 1 && this.WordColumn[start + head] != -1)
+                this.HeadColumn[start + i] = head;
+        }
+        addSentenceEnd();
+    }
+
+    private static int parseInt(String s)
+    {
+        try
+        {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e)
+        {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * xóa các câu đã thêm nhưng giữ lại bảng mã từ và mã kiểu, dùng khi đọc từng câu một
+     */
+    public void clear()
+    {
+        this.TokenCount = 0;
+        this.SentenceCount = 0;
+    }
+
+    private void addSentenceEnd()
+    {
+        if (this.SentenceCount + 1 >= this.SentenceStarts.length)
+            this.SentenceStarts = Arrays.copyOf(this.SentenceStarts, 2 * this.SentenceStarts.length + 1);
+        this.SentenceCount++;
+        this.SentenceStarts[this.SentenceCount] = this.TokenCount;
+    }
+
+    private void ensureTokenCapacity(int capacity)
+    {
+        if (capacity <= this.Locations.length)
+            return;
+        var length = Math.max(capacity, 2 * this.Locations.length);
+        this.Locations = Arrays.copyOf(this.Locations, length);
+        this.WordColumn = Arrays.copyOf(this.WordColumn, length);
+        this.TypeColumn = Arrays.copyOf(this.TypeColumn, length);
+        this.HeadColumn = Arrays.copyOf(this.HeadColumn, length);
+    }
+
+    private static int getId(String s, ArrayList<String> values, HashMap<String, Integer> ids)
+    {
+        var id = ids.get(s);
+        if (id != null)
+            return id;
+        id = values.size();
+        values.add(s);
+        ids.put(s, id);
+        return id;
+    }
+
+    /**
+     * bỏ phần thừa của các mảng sau khi đã thêm xong các câu
+     */
+    public void trim()
+    {
+        this.Locations = Arrays.copyOf(this.Locations, this.TokenCount);
+        this.WordColumn = Arrays.copyOf(this.WordColumn, this.TokenCount);
+        this.TypeColumn = Arrays.copyOf(this.TypeColumn, this.TokenCount);
+        this.HeadColumn = Arrays.copyOf(this.HeadColumn, this.TokenCount);
+        this.SentenceStarts = Arrays.copyOf(this.SentenceStarts, this.SentenceCount + 1);
+        this.Words.trimToSize();
+        this.Types.trimToSize();
+    }
+
+    public int size()
+    {
+        return this.SentenceCount;
+    }
+
+    public int tokenCount()
+    {
+        return this.TokenCount;
+    }
+
+    public int getSentenceStart(int sentence)
+    {
+        return this.SentenceStarts[sentence];
+    }
+
+    public int getSentenceLength(int sentence)
+    {
+        return this.SentenceStarts[sentence + 1] - this.SentenceStarts[sentence];
+    }
+
+    public int getLocation(int token)
+    {
+        return this.Locations[token];
+    }
+
+    public int getWordId(int token)
+    {
+        return this.WordColumn[token];
+    }
+
+    public int getTypeId(int token)
+    {
+        return this.TypeColumn[token];
+    }
+
+    /**
+     * chỉ số trong câu của từ được nối đến, -1 nếu không có
+     */
+    public int getHead(int token)
+    {
+        return this.HeadColumn[token];
+    }
+
+    public String getWord(int token)
+    {
+        var id = this.WordColumn[token];
+        return id == -1 ? null : this.Words.get(id);
+    }
+
+    public String getType(int token)
+    {
+        var id = this.TypeColumn[token];
+        return id == -1 ? null : this.Types.get(id);
+    }
+
+    public TreebankSentence getSentence(int sentence)
+    {
+        return new TreebankSentence(this, sentence);
+    }
+
+    /**
+     * cây của câu, giống với VietnameseAnalyzer.getDependenceGraph của các dòng ban đầu
+     *
+     * @param sentence
+     * @return
+     */
+    public Graph<WordVertex> getTree(int sentence)
+    {
+        var res = new Graph<WordVertex>();
+        var start = this.SentenceStarts[sentence];
+        var end = this.SentenceStarts[sentence + 1];
+        for (var k = start; k <= end - 1; k++)
+        {
+            var head = this.HeadColumn[k];
+            if (head == -1)
+                continue;
+            var headK = start + head;
+            var vertex0 = new WordVertex(this.Locations[k],
+                    this.Words.get(this.WordColumn[k]), this.Types.get(this.TypeColumn[k]));
+            var vertex1 = new WordVertex(this.Locations[headK],
+                    this.Words.get(this.WordColumn[headK]), this.Types.get(this.TypeColumn[headK]));
+            res.addVertex(vertex0);
+            res.addVertex(vertex1);
+            res.addEdge(vertex0, vertex1);
+        }
+        return res;
+    }
+
+    @Override
+    public Iterator<Graph<WordVertex>> iterator()
+    {
+        return new Iterator<>()
+        {
+            private int Index = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.Index < Treebank.this.SentenceCount;
+            }
+
+            @Override
+            public Graph<WordVertex> next()
+            {
+                return getTree(this.Index++);
+            }
+        };
+    }
+}
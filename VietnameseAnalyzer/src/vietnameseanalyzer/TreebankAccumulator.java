@@ -0,0 +1,115 @@
+package vietnameseanalyzer;
+
+import com.trung.BinaryAction;
+import com.trung.BinaryFunction;
+import com.trung.Graph;
+import com.trung.NullFunction;
+import com.trung.UnaryAction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * một bảng thống kê được tính bằng cách cho lần lượt từng cây của kho dữ liệu huấn luyện đi qua,
+ * Accumulation không được thay đổi cây nhận vào vì cây này được dùng chung cho các bảng khác
+ *
+ * @param <S> kiểu của trạng thái đang tích lũy
+ */
+public class TreebankAccumulator<S>
+{
+    public final NullFunction<S> Initializer;
+    public final BinaryAction<S, Graph<WordVertex>> Accumulation;
+    /**
+     * gộp trạng thái của phần sau vào trạng thái của phần trước, phải có tính kết hợp,
+     * null nếu bảng chỉ tính tuần tự được
+     */
+    public final BinaryFunction<S, S, S> Merger;
+    public final UnaryAction<S> Finisher;
+
+    public TreebankAccumulator(NullFunction<S> initializer,
+                               BinaryAction<S, Graph<WordVertex>> accumulation,
+                               UnaryAction<S> finisher)
+    {
+        this(initializer, accumulation, null, finisher);
+    }
+
+    public TreebankAccumulator(NullFunction<S> initializer,
+                               BinaryAction<S, Graph<WordVertex>> accumulation,
+                               BinaryFunction<S, S, S> merger,
+                               UnaryAction<S> finisher)
+    {
+        this.Initializer = initializer;
+        this.Accumulation = accumulation;
+        this.Merger = merger;
+        this.Finisher = finisher;
+    }
+
+    public boolean isMergeable()
+    {
+        return this.Merger != null;
+    }
+
+    public S start()
+    {
+        return this.Initializer.apply();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void accept(Object state, Graph<WordVertex> tree)
+    {
+        this.Accumulation.apply((S) state, tree);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Object merge(Object left, Object right)
+    {
+        return this.Merger.apply((S) left, (S) right);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void finish(Object state)
+    {
+        this.Finisher.apply((S) state);
+    }
+
+    /**
+     * gộp hai bảng đếm: các số nguyên được cộng, HashSet được hợp, ArrayList được nối theo thứ tự,
+     * các số đếm bằng với khi đếm tuần tự nhưng thứ tự duyệt các HashMap có thể khác
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T mergeCounts(T left, T right)
+    {
+        return (T) mergeCountValues(left, right);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object mergeCountValues(Object left, Object right)
+    {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (left instanceof Integer)
+            return (Integer) left + (Integer) right;
+        if (left instanceof HashMap)
+        {
+            var leftMap = (HashMap<Object, Object>) left;
+            var rightMap = (HashMap<Object, Object>) right;
+            for (var key : rightMap.keySet())
+                leftMap.put(key, mergeCountValues(leftMap.get(key), rightMap.get(key)));
+            return leftMap;
+        }
+        if (left instanceof HashSet)
+        {
+            ((HashSet<Object>) left).addAll((HashSet<Object>) right);
+            return left;
+        }
+        if (left instanceof ArrayList)
+        {
+            ((ArrayList<Object>) left).addAll((ArrayList<Object>) right);
+            return left;
+        }
+        throw new RuntimeException("unable to merge counts of " + left.getClass().getName());
+    }
+}
@@ -0,0 +1,262 @@
+package vietnameseanalyzer;
+
+import com.trung.Graph;
+import com.trung.NullFunction;
+import com.trung.UnaryAction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * đọc vtb.txt trực tiếp từ các byte: mỗi dòng là "{", "}" hoặc một trường, mỗi câu là một cặp ngoặc
+ * chứa các dòng {vị trí, từ, kiểu, vị trí từ được nối đến, ...}, vị trí được đọc thẳng thành số,
+ * chỉ từ và kiểu được tạo thành chuỗi
+ */
+public class TreebankReader
+{
+    private static final int ChunkSize = 1 << 16;
+
+    private final UnaryAction<TreebankReader> SentenceAction;
+    private byte[] Line = new byte[256];
+    private int LineLength = 0;
+    private int Balance = 0;
+    private int FieldIndex = 0;
+
+    private int Length = 0;
+    private int[] Locations = new int[64];
+    private String[] Words = new String[64];
+    private String[] Types = new String[64];
+    private int[] Heads = new int[64];
+
+    private TreebankReader(UnaryAction<TreebankReader> sentenceAction)
+    {
+        this.SentenceAction = sentenceAction;
+    }
+
+    /**
+     * đọc toàn bộ tệp vào một Treebank, tệp được ánh xạ vào bộ nhớ thay vì đọc từng dòng
+     *
+     * @param path
+     * @return
+     */
+    public static Treebank read(Path path)
+    {
+        var res = new Treebank();
+        scan(mappedChunks(path), reader -> reader.addTo(res));
+        res.trim();
+        return res;
+    }
+
+    public static Treebank read(InputStream in)
+    {
+        var res = new Treebank();
+        scan(streamChunks(in), reader -> reader.addTo(res));
+        res.trim();
+        return res;
+    }
+
+    /**
+     * gọi action cho cây của từng câu ngay khi câu được đọc xong, không câu nào được giữ lại
+     * nên có thể dùng cho kho dữ liệu lớn hơn bộ nhớ
+     *
+     * @param path
+     * @param action
+     */
+    public static void forEach(Path path, UnaryAction<Graph<WordVertex>> action)
+    {
+        scan(mappedChunks(path), treeAction(action));
+    }
+
+    public static void forEach(InputStream in, UnaryAction<Graph<WordVertex>> action)
+    {
+        scan(streamChunks(in), treeAction(action));
+    }
+
+    private static UnaryAction<TreebankReader> treeAction(UnaryAction<Graph<WordVertex>> action)
+    {
+        var sentence = new Treebank();
+        return reader ->
+        {
+            sentence.clear();
+            reader.addTo(sentence);
+            action.apply(sentence.getTree(0));
+        };
+    }
+
+    private void addTo(Treebank treebank)
+    {
+        treebank.addSentence(this.Length, this.Locations, this.Words, this.Types, this.Heads);
+    }
+
+    private static void scan(NullFunction<ByteBuffer> chunks, UnaryAction<TreebankReader> sentenceAction)
+    {
+        var reader = new TreebankReader(sentenceAction);
+        ByteBuffer chunk;
+        while ((chunk = chunks.apply()) != null)
+        {
+            while (chunk.hasRemaining())
+            {
+                var b = chunk.get();
+                if (b == '\n')
+                    reader.endLine();
+                else reader.append(b);
+            }
+        }
+        if (reader.LineLength > 0)
+            reader.endLine();
+        if (reader.Balance != 0)
+            throw new RuntimeException("unbalanced braces in treebank");
+    }
+
+    private void append(byte b)
+    {
+        if (this.LineLength == this.Line.length)
+            this.Line = Arrays.copyOf(this.Line, 2 * this.Line.length);
+        this.Line[this.LineLength++] = b;
+    }
+
+    private void endLine()
+    {
+        var length = this.LineLength;
+        if (length > 0 && this.Line[length - 1] == '\r')
+            length--;
+        this.LineLength = 0;
+        if (length == 1 && this.Line[0] == '{')
+        {
+            this.Balance++;
+            if (this.Balance == 1)
+                this.Length = 0;
+            if (this.Balance == 2)
+                startRow();
+        } else if (length == 1 && this.Line[0] == '}')
+        {
+            this.Balance--;
+            if (this.Balance == 0)
+                this.SentenceAction.apply(this);
+            if (this.Balance < 0)
+                throw new RuntimeException("unbalanced braces in treebank");
+        } else if (this.Balance == 2)
+        {
+            var row = this.Length - 1;
+            switch (this.FieldIndex)
+            {
+                case 0:
+                    this.Locations[row] = parseInt(this.Line, length);
+                    break;
+                case 1:
+                    this.Words[row] = new String(this.Line, 0, length, StandardCharsets.UTF_8);
+                    break;
+                case 2:
+                    this.Types[row] = new String(this.Line, 0, length, StandardCharsets.UTF_8);
+                    break;
+                case 3:
+                    this.Heads[row] = parseInt(this.Line, length);
+                    break;
+            }
+            this.FieldIndex++;
+        }
+    }
+
+    private void startRow()
+    {
+        if (this.Length == this.Locations.length)
+        {
+            var capacity = 2 * this.Length;
+            this.Locations = Arrays.copyOf(this.Locations, capacity);
+            this.Words = Arrays.copyOf(this.Words, capacity);
+            this.Types = Arrays.copyOf(this.Types, capacity);
+            this.Heads = Arrays.copyOf(this.Heads, capacity);
+        }
+        this.Locations[this.Length] = Integer.MIN_VALUE;
+        this.Words[this.Length] = null;
+        this.Types[this.Length] = null;
+        this.Heads[this.Length] = Integer.MIN_VALUE;
+        this.Length++;
+        this.FieldIndex = 0;
+    }
+
+    /**
+     * giống Integer.parseInt nhưng đọc thẳng từ các byte, trả về Integer.MIN_VALUE nếu không phải là số
+     */
+    private static int parseInt(byte[] bytes, int length)
+    {
+        if (length == 0)
+            return Integer.MIN_VALUE;
+        var i = 0;
+        var negative = false;
+        if (bytes[0] == '-' || bytes[0] == '+')
+        {
+            negative = bytes[0] == '-';
+            i++;
+            if (length == 1)
+                return Integer.MIN_VALUE;
+        }
+        long res = 0;
+        for (; i <= length - 1; i++)
+        {
+            var b = bytes[i];
+            if (b < '0' || b > '9')
+                return Integer.MIN_VALUE;
+            res = 10 * res + (b - '0');
+            if (res > Integer.MAX_VALUE)
+                return Integer.MIN_VALUE;
+        }
+        return (int) (negative ? -res : res);
+    }
+
+    private static NullFunction<ByteBuffer> streamChunks(InputStream in)
+    {
+        var bytes = new byte[ChunkSize];
+        return () ->
+        {
+            try
+            {
+                var n = in.read(bytes);
+                return n < 0 ? null : ByteBuffer.wrap(bytes, 0, n);
+            } catch (IOException e)
+            {
+                throw new RuntimeException("unable to read treebank: " + e.getMessage());
+            }
+        };
+    }
+
+    /**
+     * ánh xạ tệp thành từng đoạn, mỗi đoạn không quá Integer.MAX_VALUE byte
+     */
+    private static NullFunction<ByteBuffer> mappedChunks(Path path)
+    {
+        try
+        {
+            var channel = FileChannel.open(path, StandardOpenOption.READ);
+            var size = channel.size();
+            var position = new long[]{0};
+            return () ->
+            {
+                try
+                {
+                    if (position[0] >= size)
+                    {
+                        channel.close();
+                        return null;
+                    }
+                    var length = Math.min(size - position[0], Integer.MAX_VALUE);
+                    var res = channel.map(FileChannel.MapMode.READ_ONLY, position[0], length);
+                    position[0] += length;
+                    return res;
+                } catch (IOException e)
+                {
+                    throw new RuntimeException("unable to read treebank " + path + ": " + e.getMessage());
+                }
+            };
+        } catch (IOException e)
+        {
+            throw new RuntimeException("unable to open treebank " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package vietnameseanalyzer;
+
+import com.trung.Graph;
+
+/**
+ * một câu của Treebank, chỉ giữ chỉ số của câu và đọc trực tiếp từ các cột của Treebank
+ */
+public class TreebankSentence
+{
+    public final Treebank Source;
+    public final int Index;
+
+    public TreebankSentence(Treebank source, int index)
+    {
+        this.Source = source;
+        this.Index = index;
+    }
+
+    public int size()
+    {
+        return this.Source.getSentenceLength(this.Index);
+    }
+
+    public int getLocation(int i)
+    {
+        return this.Source.getLocation(this.Source.getSentenceStart(this.Index) + i);
+    }
+
+    public String getWord(int i)
+    {
+        return this.Source.getWord(this.Source.getSentenceStart(this.Index) + i);
+    }
+
+    public String getType(int i)
+    {
+        return this.Source.getType(this.Source.getSentenceStart(this.Index) + i);
+    }
+
+    public int getHead(int i)
+    {
+        return this.Source.getHead(this.Source.getSentenceStart(this.Index) + i);
+    }
+
+    public Graph<WordVertex> toTree()
+    {
+        return this.Source.getTree(this.Index);
+    }
+}
@@ -0,0 +1,151 @@
+package vietnameseanalyzer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * duyệt kho dữ liệu huấn luyện một lần duy nhất, mỗi câu chỉ được chuyển thành cây một lần
+ * rồi cây đó được đưa cho tất cả các bộ tích lũy đã đăng ký
+ */
+public class TreebankStatistics
+{
+    /**
+     * số luồng dùng để tính các bảng gộp được, 1 là tính tuần tự; các số đếm không đổi theo số luồng
+     * nhưng thứ tự duyệt các HashMap thì có thể đổi, nên các bảng được chọn theo thứ tự đó (ví dụ khi có
+     * các giá trị bằng nhau) không chắc giống hệt khi tính tuần tự
+     */
+    public static int Parallelism = 1;
+
+    private final ArrayList<TreebankAccumulator<?>> Accumulators = new ArrayList<>();
+
+    public TreebankStatistics register(TreebankAccumulator<?> accumulator)
+    {
+        this.Accumulators.add(accumulator);
+        return this;
+    }
+
+    public int size()
+    {
+        return this.Accumulators.size();
+    }
+
+    public void run(Treebank treebank)
+    {
+        if (this.Accumulators.size() == 0)
+            return;
+        if (treebank == null)
+            throw new RuntimeException("treebank is not loaded");
+        var parallelism = Math.min(Parallelism, treebank.size());
+        if (parallelism <= 1)
+        {
+            runSequential(treebank, this.Accumulators);
+            return;
+        }
+        var mergeables = new ArrayList<TreebankAccumulator<?>>();
+        var sequentials = new ArrayList<TreebankAccumulator<?>>();
+        for (var accumulator : this.Accumulators)
+            if (accumulator.isMergeable())
+                mergeables.add(accumulator);
+            else sequentials.add(accumulator);
+        if (mergeables.size() != 0)
+            runParallel(treebank, mergeables, parallelism);
+        if (sequentials.size() != 0)
+            runSequential(treebank, sequentials);
+    }
+
+    /**
+     * tính tuần tự trong khi đọc tệp, các câu không được giữ lại trong bộ nhớ
+     *
+     * @param treebankFile
+     */
+    public void run(Path treebankFile)
+    {
+        if (this.Accumulators.size() == 0)
+            return;
+        var states = new Object[this.Accumulators.size()];
+        for (var i = 0; i <= this.Accumulators.size() - 1; i++)
+            states[i] = this.Accumulators.get(i).start();
+        TreebankReader.forEach(treebankFile, tree ->
+        {
+            for (var i = 0; i <= this.Accumulators.size() - 1; i++)
+                this.Accumulators.get(i).accept(states[i], tree);
+        });
+        for (var i = 0; i <= this.Accumulators.size() - 1; i++)
+            this.Accumulators.get(i).finish(states[i]);
+    }
+
+    private static void runSequential(Treebank treebank, ArrayList<TreebankAccumulator<?>> accumulators)
+    {
+        var states = new Object[accumulators.size()];
+        for (var i = 0; i <= accumulators.size() - 1; i++)
+            states[i] = accumulators.get(i).start();
+        for (var tree : treebank)
+        {
+            for (var i = 0; i <= accumulators.size() - 1; i++)
+                accumulators.get(i).accept(states[i], tree);
+        }
+        for (var i = 0; i <= accumulators.size() - 1; i++)
+            accumulators.get(i).finish(states[i]);
+    }
+
+    /**
+     * chia kho dữ liệu thành các đoạn liên tiếp, mỗi đoạn có trạng thái riêng,
+     * các trạng thái được gộp theo đúng thứ tự các đoạn
+     */
+    private static void runParallel(Treebank treebank, ArrayList<TreebankAccumulator<?>> accumulators,
+                                    int parallelism)
+    {
+        // các Initializer có thể gọi các hàm get khác nên chỉ được chạy trên luồng hiện tại
+        var chunkStates = new ArrayList<Object[]>();
+        for (var c = 0; c <= parallelism - 1; c++)
+        {
+            var states = new Object[accumulators.size()];
+            for (var i = 0; i <= accumulators.size() - 1; i++)
+                states[i] = accumulators.get(i).start();
+            chunkStates.add(states);
+        }
+        var pool = new ForkJoinPool(parallelism);
+        try
+        {
+            var tasks = new ArrayList<ForkJoinTask<Object[]>>();
+            for (var c = 0; c <= parallelism - 1; c++)
+            {
+                var states = chunkStates.get(c);
+                var from = (int) ((long) treebank.size() * c / parallelism);
+                var to = (int) ((long) treebank.size() * (c + 1) / parallelism);
+                tasks.add(pool.submit(() ->
+                {
+                    for (var j = from; j <= to - 1; j++)
+                    {
+                        var tree = treebank.getTree(j);
+                        for (var i = 0; i <= accumulators.size() - 1; i++)
+                            accumulators.get(i).accept(states[i], tree);
+                    }
+                    return states;
+                }));
+            }
+            var res = tasks.get(0).join();
+            for (var c = 1; c <= tasks.size() - 1; c++)
+            {
+                var part = tasks.get(c).join();
+                for (var i = 0; i <= accumulators.size() - 1; i++)
+                    res[i] = accumulators.get(i).merge(res[i], part[i]);
+            }
+            for (var i = 0; i <= accumulators.size() - 1; i++)
+                accumulators.get(i).finish(res[i]);
+        } finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    public static void run(Treebank treebank, TreebankAccumulator<?>... accumulators)
+    {
+        var statistics = new TreebankStatistics();
+        for (var accumulator : accumulators)
+            statistics.register(accumulator);
+        statistics.run(treebank);
+    }
+}
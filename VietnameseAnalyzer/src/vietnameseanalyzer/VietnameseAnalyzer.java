@@ -4,10 +4,14 @@ import com.trung.*;
 import com.wolfram.jlink.Expr;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 
 public class VietnameseAnalyzer
@@ -26,43 +30,75 @@ public class VietnameseAnalyzer
     {
         if (EssentialOutsideTypes != null)
             return EssentialOutsideTypes;
-        var res = new HashMap<String, Integer>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var v : tree.vertexList())
-                if (isWordOutside(tree, v))
-                    Utilities.insertValue(res,
-                            new Object[]{v.Type}, 0, x -> x + 1
-                    );
-        }
-        var mean = Utilities.mean(res.values());
-        Utilities.removeKeys(res, x -> res.get(x) < mean);
-        EssentialOutsideTypes = Utilities.makeHashSet(res.keySet());
+        TreebankStatistics.run(ParsedTreebank, essentialOutsideTypesAccumulator());
         return EssentialOutsideTypes;
     }
 
+    private static TreebankAccumulator<HashMap<String, Integer>> essentialOutsideTypesAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, Integer>(),
+                (res, tree) ->
+                {
+                    for (var v : tree.vertexList())
+                        if (isWordOutside(tree, v))
+                            Utilities.insertValue(res,
+                                    new Object[]{v.Type}, 0, x -> x + 1
+                            );
+                },
+                TreebankAccumulator::mergeCounts,
+                res ->
+                {
+                    var mean = Utilities.mean(res.values());
+                    Utilities.removeKeys(res, x -> res.get(x) < mean);
+                    EssentialOutsideTypes = Utilities.makeHashSet(res.keySet());
+                }
+        );
+    }
+
     public static HashMap<String, Integer> RootTypeAppearances = null;
 
     public static HashMap<String, Integer> getRootTypeAppearances()
     {
         if (RootTypeAppearances != null)
             return RootTypeAppearances;
-        var res = new HashMap<String, Integer>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var v : tree.vertexList())
-                if (tree.vertexOutDegree(v) == 0)
-                    Utilities.insertValue(res,
-                            new Object[]{v.Type}, 0, x -> x + 1
-                    );
-        }
-        RootTypeAppearances = res;
-        return res;
+        TreebankStatistics.run(ParsedTreebank, rootTypeAppearancesAccumulator());
+        return RootTypeAppearances;
+    }
+
+    private static TreebankAccumulator<HashMap<String, Integer>> rootTypeAppearancesAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, Integer>(),
+                (res, tree) ->
+                {
+                    for (var v : tree.vertexList())
+                        if (tree.vertexOutDegree(v) == 0)
+                            Utilities.insertValue(res,
+                                    new Object[]{v.Type}, 0, x -> x + 1
+                            );
+                },
+                TreebankAccumulator::mergeCounts,
+                res -> RootTypeAppearances = res
+        );
     }
 
     public static Graph<WordVertex> decideParser(String[][] wordInfos)
+    {
+        return decideParser(getDefaultModel(), wordInfos);
+    }
+
+    public static Graph<WordVertex> decideParser(AnalyzerModel model, String[][] wordInfos)
+    {
+        return withModel(model, () -> decideWordInfosParser(wordInfos));
+    }
+
+    private static Graph<WordVertex> decideWordInfosParser(String[][] wordInfos)
+    {
+        return withTreeScoreCache(() -> decideWordInfosParserWithCache(wordInfos));
+    }
+
+    private static Graph<WordVertex> decideWordInfosParserWithCache(String[][] wordInfos)
     {
         var length = wordInfos.length;
         var copiedArr = new String[length][];
@@ -77,6 +113,21 @@ public class VietnameseAnalyzer
     }
 
     public static Graph<WordVertex> decideParser(String sentence)
+    {
+        return decideParser(getDefaultModel(), sentence);
+    }
+
+    public static Graph<WordVertex> decideParser(AnalyzerModel model, String sentence)
+    {
+        return withModel(model, () -> decideSentenceParser(sentence));
+    }
+
+    private static Graph<WordVertex> decideSentenceParser(String sentence)
+    {
+        return withTreeScoreCache(() -> decideSentenceParserWithCache(sentence));
+    }
+
+    private static Graph<WordVertex> decideSentenceParserWithCache(String sentence)
     {
         var jg = makeAnalyzingGraph(
                 Utilities.normalizeText(sentence)
@@ -268,57 +319,69 @@ public class VietnameseAnalyzer
     {
         var ls = getWordAppearancesToEdgeWeightLeastSquare();
         var wordApps = getWordAppearances();
-        final var incomingStr = "incoming";
-        final var outcomingStr = "outcoming";
+        var index = getModelIndex();
         return Utilities.sum(
-                (ArrayList<WordVertex> ed) ->
-                {
-                    var v0 = ed.get(0);
-                    var v1 = ed.get(1);
-                    var dir = getEdgeDirection(ed);
-                    var counter = WordAppearancesToEdgeWeightCounter;
-                    var v0Assoc = (HashMap<String, Integer>) NullFunction.createInstance(() ->
-                    {
-                        var aux = Utilities.getValue(counter,
-                                new CustomArrayList<>(new String[]{v0.Word, v0.Type}),
-                                outcomingStr, dir
-                        );
-                        if (aux != null)
-                            return aux;
-                        else return new HashMap<>();
-                    }).apply();
-                    var v0Weight = Utilities.sum(
-                            x -> isSimilarType(x, v1.Type) ? v0Assoc.get(x) : 0
-                            , v0Assoc.keySet());
-                    var v1Assoc = (HashMap<String, Integer>) NullFunction.createInstance(() ->
-                    {
-                        var aux = Utilities.getValue(counter,
-                                new CustomArrayList<>(new String[]{v1.Word, v1.Type}), incomingStr,
-                                dir
-                        );
-                        if (aux != null)
-                            return aux;
-                        else return new HashMap<>();
-                    }).apply();
-                    var v1Weight = Utilities.sum(
-                            x -> isSimilarType(x, v0.Type) ? v1Assoc.get(x) : 0
-                            , v1Assoc.keySet());
-                    var app0 = wordApps.get(v0.Word).get(v0.Type);
-                    var app1 = wordApps.get(v1.Word).get(v1.Type);
-                    var prods = Utilities.mapThread((x, y) -> x.doubleValue() * y.doubleValue(),
-                            ls,
-                            (ArrayList<Number>) Utilities.toArrayList(new Number[]{
-                                    app0,
-                                    app1,
-                                    v0Weight,
-                                    v1Weight
-                            })
-                    );
-                    return Utilities.sum(prods);
-                }
+                (ArrayList<WordVertex> ed) -> getTreeEdgeWeight(ls, wordApps, index, ed.get(0), ed.get(1))
                 , tree.edgeList());
     }
 
+    public static double getTreeWeight(HeadTree tree)
+    {
+        var ls = getWordAppearancesToEdgeWeightLeastSquare();
+        var wordApps = getWordAppearances();
+        var index = getModelIndex();
+        var res = 0d;
+        for (var i = 0; i <= tree.size() - 1; i++)
+        {
+            var head = tree.getHead(i);
+            if (head != -1)
+                res += getTreeEdgeWeight(ls, wordApps, index, tree.getVertex(i), tree.getVertex(head));
+        }
+        return res;
+    }
+
+    private static double getTreeEdgeWeight(ArrayList<Double> ls,
+                                            HashMap<String, HashMap<String, Integer>> wordApps,
+                                            ModelIndex index,
+                                            WordVertex v0,
+                                            WordVertex v1)
+    {
+        var next = v0.Location < v1.Location;
+        var v0Weight = index.getConnectionWeight(v0.Word, v0.Type, false, next, v1.Type);
+        var v1Weight = index.getConnectionWeight(v1.Word, v1.Type, true, next, v0.Type);
+        var app0 = wordApps.get(v0.Word).get(v0.Type);
+        var app1 = wordApps.get(v1.Word).get(v1.Type);
+        var res = 0d;
+        res += ls.get(0) * app0.doubleValue();
+        res += ls.get(1) * app1.doubleValue();
+        res += ls.get(2) * (double) v0Weight;
+        res += ls.get(3) * (double) v1Weight;
+        return res;
+    }
+
+    private static volatile ModelIndex Index = null;
+
+    /**
+     * bảng tra cứu theo mã số của các bảng WordAppearancesToEdgeWeightCounter, TernaryLocals,
+     * CloseSeparation, CloseCounter, NextTypes, BeforeTypes, WordAppearances, ReducedTypeMap hiện tại,
+     * được tạo lại khi một trong các bảng này được thay
+     *
+     * @return
+     */
+    public static ModelIndex getModelIndex()
+    {
+        var res = Index;
+        // model không có kho dữ liệu thì không tính được ReducedTypeMap, dùng bảng đã gán
+        var reducedTypeMap = ReducedTypeMap != null || ParsedTreebank == null ? ReducedTypeMap : getReducedTypeMap();
+        if (res != null && res.isBuiltFrom(WordAppearancesToEdgeWeightCounter, TernaryLocals, CloseSeparation, CloseCounter,
+                NextTypes, BeforeTypes, WordAppearances, reducedTypeMap))
+            return res;
+        res = new ModelIndex(WordAppearancesToEdgeWeightCounter, TernaryLocals, CloseSeparation, CloseCounter,
+                NextTypes, BeforeTypes, WordAppearances, reducedTypeMap);
+        Index = res;
+        return res;
+    }
+
     public static HashMap<ArrayList<String>, HashMap<String, HashMap<String, HashMap<String, Integer>>>> WordAppearancesToEdgeWeightCounter = null;
     public static ArrayList<Double> WordAppearancesToEdgeWeightLeastSquare = null;
 
@@ -326,68 +389,79 @@ public class VietnameseAnalyzer
     {
         if (WordAppearancesToEdgeWeightLeastSquare != null)
             return WordAppearancesToEdgeWeightLeastSquare;
-        HashMap<ArrayList<String>, HashMap<String, HashMap<String, HashMap<String, Integer>>>> counter = new HashMap<>();
-        WordAppearancesToEdgeWeightCounter = counter;
+        TreebankStatistics.run(ParsedTreebank, wordAppearancesToEdgeWeightCounterAccumulator());
+        getWordAppearances();
+        TreebankStatistics.run(ParsedTreebank, wordAppearancesToEdgeWeightLeastSquareAccumulator());
+        return WordAppearancesToEdgeWeightLeastSquare;
+    }
+
+    private static TreebankAccumulator<HashMap<ArrayList<String>, HashMap<String, HashMap<String, HashMap<String, Integer>>>>> wordAppearancesToEdgeWeightCounterAccumulator()
+    {
         final var incomingStr = "incoming";
         final var outcomingStr = "outcoming";
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var ed : tree.edgeList())
-            {
-                var dir = getEdgeDirection(ed);
-                var v0 = ed.get(0);
-                var v1 = ed.get(1);
-                Utilities.insertValue(counter,
-                        new Object[]{new CustomArrayList<>(new String[]{v0.Word, v0.Type}), outcomingStr, dir,
-                                v1.Type}, 0, x -> x + 1
-                );
-                Utilities.insertValue(counter,
-                        new Object[]{
-                                new CustomArrayList<>(new String[]{v1.Word, v1.Type}), incomingStr, dir, v0.Type
-                        }, 0, x -> x + 1
-                );
-            }
-        }
-        var wordApps = getWordAppearances();
-        var data = new ArrayList<ArrayList<Number>>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var ed : tree.edgeList())
-            {
-                var v0 = ed.get(0);
-                var v1 = ed.get(1);
-                var dir = getEdgeDirection(ed);
-                var v0Assoc = (HashMap<String, Integer>) Utilities.getValue(counter,
-                        new CustomArrayList<>(new String[]{v0.Word, v0.Type}),
-                        outcomingStr, dir
-                );
-                var v0Weight = Utilities.sum(
-                        x -> isSimilarType(x, v1.Type) ? v0Assoc.get(x) : 0
-                        , v0Assoc.keySet());
-                var v1Assoc = (HashMap<String, Integer>) Utilities.getValue(counter,
-                        new CustomArrayList<>(new String[]{v1.Word, v1.Type}), incomingStr,
-                        dir
-                );
-                var v1Weight = Utilities.sum(
-                        x -> isSimilarType(x, v0.Type) ? v1Assoc.get(x) : 0
-                        , v1Assoc.keySet());
-                data.add(
-                        new CustomArrayList<Number>(
-                                new Double[]{
-                                        wordApps.get(v0.Word).get(v0.Type).doubleValue(),
-                                        wordApps.get(v1.Word).get(v1.Type).doubleValue(),
-                                        v0Weight,
-                                        v1Weight,
-                                        Utilities.max(v0Weight, v1Weight)
-                                }
-                        )
-                );
-            }
-        }
-        WordAppearancesToEdgeWeightLeastSquare = getLeastSquares((ArrayList<ArrayList<? extends Number>>) (Object) data);
-        return WordAppearancesToEdgeWeightLeastSquare;
+        return new TreebankAccumulator<>(
+                () -> new HashMap<ArrayList<String>, HashMap<String, HashMap<String, HashMap<String, Integer>>>>(),
+                (counter, tree) ->
+                {
+                    for (var ed : tree.edgeList())
+                    {
+                        var dir = getEdgeDirection(ed);
+                        var v0 = ed.get(0);
+                        var v1 = ed.get(1);
+                        Utilities.insertValue(counter,
+                                new Object[]{new CustomArrayList<>(new String[]{v0.Word, v0.Type}), outcomingStr, dir,
+                                        v1.Type}, 0, x -> x + 1
+                        );
+                        Utilities.insertValue(counter,
+                                new Object[]{
+                                        new CustomArrayList<>(new String[]{v1.Word, v1.Type}), incomingStr, dir, v0.Type
+                                }, 0, x -> x + 1
+                        );
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                counter -> WordAppearancesToEdgeWeightCounter = counter
+        );
+    }
+
+    /**
+     * cần WordAppearances và WordAppearancesToEdgeWeightCounter đã được tính trước
+     */
+    private static TreebankAccumulator<ArrayList<ArrayList<? extends Number>>> wordAppearancesToEdgeWeightLeastSquareAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () ->
+                {
+                    getModelIndex();
+                    return new ArrayList<ArrayList<? extends Number>>();
+                },
+                (data, tree) ->
+                {
+                    var index = getModelIndex();
+                    var wordApps = WordAppearances;
+                    for (var ed : tree.edgeList())
+                    {
+                        var v0 = ed.get(0);
+                        var v1 = ed.get(1);
+                        var next = getEdgeDirection(ed).equals("next");
+                        var v0Weight = index.getConnectionWeight(v0.Word, v0.Type, false, next, v1.Type);
+                        var v1Weight = index.getConnectionWeight(v1.Word, v1.Type, true, next, v0.Type);
+                        data.add(
+                                new CustomArrayList<Number>(
+                                        new Double[]{
+                                                wordApps.get(v0.Word).get(v0.Type).doubleValue(),
+                                                wordApps.get(v1.Word).get(v1.Type).doubleValue(),
+                                                (double) v0Weight,
+                                                (double) v1Weight,
+                                                (double) Math.max(v0Weight, v1Weight)
+                                        }
+                                )
+                        );
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                data -> WordAppearancesToEdgeWeightLeastSquare = getLeastSquares(data)
+        );
     }
 
     public static ArrayList<Double> EndingNextBeforeLeastSquare = null;
@@ -396,14 +470,20 @@ public class VietnameseAnalyzer
     {
         if (EndingNextBeforeLeastSquare != null)
             return EndingNextBeforeLeastSquare;
-        EndingNextBeforeLeastSquare = getNextBeforeLeastSquare(
+        TreebankStatistics.run(ParsedTreebank, endingNextBeforeLeastSquareAccumulator());
+        return EndingNextBeforeLeastSquare;
+    }
+
+    private static TreebankAccumulator<ArrayList<ArrayList<? extends Number>>> endingNextBeforeLeastSquareAccumulator()
+    {
+        return nextBeforeLeastSquareAccumulator(
                 (tree, x, y) ->
                 {
                     var vs = tree.vertexList();
                     return !Utilities.anyTrue(vs, v -> v.Location > y.Location);
-                }
+                },
+                res -> EndingNextBeforeLeastSquare = res
         );
-        return EndingNextBeforeLeastSquare;
     }
 
     public static ArrayList<Double> StartingNextBeforeLeastSquare = null;
@@ -412,14 +492,20 @@ public class VietnameseAnalyzer
     {
         if (StartingNextBeforeLeastSquare != null)
             return StartingNextBeforeLeastSquare;
-        StartingNextBeforeLeastSquare = getNextBeforeLeastSquare(
+        TreebankStatistics.run(ParsedTreebank, startingNextBeforeLeastSquareAccumulator());
+        return StartingNextBeforeLeastSquare;
+    }
+
+    private static TreebankAccumulator<ArrayList<ArrayList<? extends Number>>> startingNextBeforeLeastSquareAccumulator()
+    {
+        return nextBeforeLeastSquareAccumulator(
                 (tree, x, y) ->
                 {
                     var vs = tree.vertexList();
                     return !Utilities.anyTrue(vs, v -> v.Location < x.Location);
-                }
+                },
+                res -> StartingNextBeforeLeastSquare = res
         );
-        return StartingNextBeforeLeastSquare;
     }
 
     public static ArrayList<Double> NextBeforeLeastSquare = null;
@@ -428,9 +514,15 @@ public class VietnameseAnalyzer
     {
         if (NextBeforeLeastSquare != null)
             return NextBeforeLeastSquare;
+        TreebankStatistics.run(ParsedTreebank, nextBeforeLeastSquareAccumulator());
+        return NextBeforeLeastSquare;
+    }
+
+    private static TreebankAccumulator<ArrayList<ArrayList<? extends Number>>> nextBeforeLeastSquareAccumulator()
+    {
 //        var eds = new AtomicReference<HashSet<ArrayList<WordVertex>>>();
 //        eds.set(null);
-        NextBeforeLeastSquare = getNextBeforeLeastSquare(
+        return nextBeforeLeastSquareAccumulator(
                 (tree, x, y) ->
                 {
                     return true;
@@ -439,55 +531,63 @@ public class VietnameseAnalyzer
 //                    return Utilities.anyTrue(eds.get(),
 //                            ed -> ed.contains(x) && ed.contains(y)
 //                    );
-                }
+                },
+                res -> NextBeforeLeastSquare = res
         );
-        return NextBeforeLeastSquare;
     }
 
     public static ArrayList<Double> getNextBeforeLeastSquare(TernaryFunction<Graph<WordVertex>, WordVertex, WordVertex, Boolean> checkf)
     {
-        var nextTypes = getNextTypes();
-        var beforeTypes = getBeforeTypes();
-        var wordApps = getWordAppearances();
-        var data = new ArrayList<ArrayList<? extends Number>>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            var vs = Utilities.makeArrayList(tree.vertexList());
-            Utilities.sortBy(vs, x -> x.Location);
-            for (var i = 0; i <= vs.size() - 2; i++)
-            {
-                var iV = vs.get(i);
-                var nextIV = vs.get(i + 1);
-                if (nextIV.Location - iV.Location == 1 && checkf.apply(tree, iV, nextIV))
+        var res = new AtomicReference<ArrayList<Double>>();
+        TreebankStatistics.run(ParsedTreebank, nextBeforeLeastSquareAccumulator(checkf, x -> res.set(x)));
+        return res.get();
+    }
+
+    /**
+     * cần NextTypes, BeforeTypes và WordAppearances, nếu chưa có thì sẽ được tính trước khi duyệt
+     */
+    private static TreebankAccumulator<ArrayList<ArrayList<? extends Number>>> nextBeforeLeastSquareAccumulator(
+            TernaryFunction<Graph<WordVertex>, WordVertex, WordVertex, Boolean> checkf,
+            UnaryAction<ArrayList<Double>> finisher)
+    {
+        return new TreebankAccumulator<>(
+                () ->
+                {
+                    getNextTypes();
+                    getBeforeTypes();
+                    getWordAppearances();
+                    getModelIndex();
+                    return new ArrayList<ArrayList<? extends Number>>();
+                },
+                (data, tree) ->
                 {
-                    var nextWeight = NullFunction.createInstance(() ->
+                    var index = getModelIndex();
+                    var wordApps = WordAppearances;
+                    var vs = Utilities.makeArrayList(tree.vertexList());
+                    Utilities.sortBy(vs, x -> x.Location);
+                    for (var i = 0; i <= vs.size() - 2; i++)
                     {
-                        var corres = nextTypes.get(iV.Word).get(iV.Type);
-                        return Utilities.sum(
-                                x -> isSimilarType(x, nextIV.Type) ? corres.get(x) : 0
-                                , corres.keySet());
-                    }).apply();
-                    var beforeWeight = NullFunction.createInstance(() ->
-                    {
-                        var corres = beforeTypes.get(nextIV.Word).get(nextIV.Type);
-                        return Utilities.sum(
-                                x -> isSimilarType(x, iV.Type) ? corres.get(x) : 0
-                                , corres.keySet());
-                    }).apply();
-                    data.add(
-                            new CustomArrayList<>(new Number[]{
-                                    wordApps.get(iV.Word).get(iV.Type),
-                                    wordApps.get(nextIV.Word).get(nextIV.Type),
-                                    nextWeight, beforeWeight,
-                                    Utilities.min(nextWeight, beforeWeight)
-                                    /*(nextWeight+beforeWeight)/2*/
-                            })
-                    );
-                }
-            }
-        }
-        return getLeastSquares((ArrayList<ArrayList<? extends Number>>) (Object) data);
+                        var iV = vs.get(i);
+                        var nextIV = vs.get(i + 1);
+                        if (nextIV.Location - iV.Location == 1 && checkf.apply(tree, iV, nextIV))
+                        {
+                            var nextWeight = (double) index.getNextTypeWeight(iV.Word, iV.Type, nextIV.Type);
+                            var beforeWeight = (double) index.getBeforeTypeWeight(nextIV.Word, nextIV.Type, iV.Type);
+                            data.add(
+                                    new CustomArrayList<>(new Number[]{
+                                            wordApps.get(iV.Word).get(iV.Type),
+                                            wordApps.get(nextIV.Word).get(nextIV.Type),
+                                            nextWeight, beforeWeight,
+                                            Utilities.min(nextWeight, beforeWeight)
+                                            /*(nextWeight+beforeWeight)/2*/
+                                    })
+                            );
+                        }
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                data -> finisher.apply(getLeastSquares(data))
+        );
     }
 
     public static Graph<WordVertex> makeAnalyzingGraph(String[][] wordInfos)
@@ -567,56 +667,45 @@ public class VietnameseAnalyzer
     {
         if (WordNextWords != null)
             return WordNextWords;
-        var res = new HashMap<ArrayList<String>, HashSet<ArrayList<String>>>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            var vs = Utilities.makeArrayList(tree.vertexList());
-            Utilities.sortBy(vs, x -> x.Location);
-            for (var i = 0; i <= vs.size() - 2; i++)
-            {
-                var iEle = vs.get(i);
-                var nextIEle = vs.get(i + 1);
-                if (nextIEle.Location - iEle.Location == 1)
-                {
-                    Utilities.insertValue(res,
-                            new Object[]{
-                                    new CustomArrayList<>(new String[]{iEle.Word, iEle.Type})
-                            }, new HashSet<ArrayList<String>>(),
-                            x ->
-                            {
-                                x.add(new CustomArrayList<>(new String[]{nextIEle.Word, nextIEle.Type}));
-                                return x;
-                            }
-                    );
-                }
-            }
-        }
-        WordNextWords = res;
-        return res;
+        TreebankStatistics.run(ParsedTreebank, wordNextWordsAccumulator());
+        return WordNextWords;
     }
 
-    public static String normalizeWord(String word)
+    private static TreebankAccumulator<HashMap<ArrayList<String>, HashSet<ArrayList<String>>>> wordNextWordsAccumulator()
     {
-        var chars = Utilities.map(
-                (Integer i) -> word.charAt(i)
-                , Utilities.range(0, word.length() - 1));
-        var map = new CustomHashMap<List<Character>, List<Character>>(
-                new Object[][]{
+        return new TreebankAccumulator<>(
+                () -> new HashMap<ArrayList<String>, HashSet<ArrayList<String>>>(),
+                (res, tree) ->
+                {
+                    var vs = Utilities.makeArrayList(tree.vertexList());
+                    Utilities.sortBy(vs, x -> x.Location);
+                    for (var i = 0; i <= vs.size() - 2; i++)
+                    {
+                        var iEle = vs.get(i);
+                        var nextIEle = vs.get(i + 1);
+                        if (nextIEle.Location - iEle.Location == 1)
                         {
-                                new CustomArrayList<>(new Object[]{' ', ' '}),
-                                new CustomArrayList<>(new Object[]{' '})
+                            Utilities.insertValue(res,
+                                    new Object[]{
+                                            new CustomArrayList<>(new String[]{iEle.Word, iEle.Type})
+                                    }, new HashSet<ArrayList<String>>(),
+                                    x ->
+                                    {
+                                        x.add(new CustomArrayList<>(new String[]{nextIEle.Word, nextIEle.Type}));
+                                        return x;
+                                    }
+                            );
                         }
-                }
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                res -> WordNextWords = res
         );
-        chars = Utilities.rewrite(chars, map);
-        chars = (ArrayList<Character>) Utilities.trim(chars, x -> x.equals(' '));
-        var res = new AtomicReference<String>("");
-        Utilities.map((Character c) ->
-        {
-            res.set(res.get() + c);
-        }, chars);
-        return res.get();
+    }
+
+    public static String normalizeWord(String word)
+    {
+        return SentenceNormalizer.normalizeWord(word);
     }
 
     public static ArrayList<ArrayList<SegmentWord>> analyzeSentence(String[][] wordInfos)
@@ -649,52 +738,21 @@ public class VietnameseAnalyzer
         return res;
     }
 
+    /**
+     * kết quả tách từ của các đoạn câu đã gặp với model đang được cài, là getSegmentations của model đó
+     * nên khi đổi qua lại giữa các model các kết quả cũ vẫn được giữ
+     */
+    public static SegmentationCache ChunkSegmentations = new SegmentationCache(4096);
+
     public static ArrayList<ArrayList<SegmentWord>> analyzeSentence(String sentence)
     {
-        var chars = Utilities.map(
-                (Integer i) -> sentence.charAt(i)
-                , Utilities.range(0, sentence.length() - 1));
-        var selectedChars = Utilities.rewrite(chars,
-                NullFunction.createInstance(() ->
-                {
-                    var aux = new HashMap<List<Character>, List<Character>>();
-                    aux.put(
-                            new CustomArrayList<>(new Character[]{' ', ' '}),
-                            new CustomArrayList<>(new Character[]{' '})
-                    );
-                    aux.put(
-                            new CustomArrayList<>(new Character[]{',', ','}),
-                            new CustomArrayList<>(new Character[]{','})
-                    );
-                    aux.put(
-                            new CustomArrayList<>(new Character[]{' ', ','}),
-                            new CustomArrayList<>(new Character[]{','})
-                    );
-                    aux.put(
-                            new CustomArrayList<>(new Character[]{'?'}),
-                            new CustomArrayList<>(new Character[]{})
-                    );
-                    aux.put(
-                            new CustomArrayList<>(new Character[]{'.'}),
-                            new CustomArrayList<>(new Character[]{})
-                    );
-                    return aux;
-                }).apply()
-        );
-        selectedChars = Utilities.rewrite(selectedChars,
-                (List<Character> x) -> x.size() == 2 && x.get(0).equals(',') && !x.get(1).equals(' '),
-                x -> new CustomArrayList<>(new Character[]{',', ' ', x.get(1)})
-        );
-        selectedChars = (ArrayList<Character>) Utilities.trim(selectedChars,
-                x -> x.equals(' ') || x.equals(',')
-        );
-        var simplifiedS = "";
-        for (var ele : selectedChars)
-            simplifiedS += ele;
-        var splits = simplifiedS.split(",");
-        var subReses = Utilities.map(
-                (String x) -> nonCommaAnalyzeSentence(x)
-                , splits);
+        var normalized = SentenceNormalizer.normalize(sentence);
+        var subReses = new ArrayList<ArrayList<SegmentWord>>();
+        for (var i = 0; i <= normalized.chunkCount() - 1; i++)
+        {
+            var syllables = normalized.getSyllables(i);
+            subReses.add(ChunkSegmentations.get(syllables, () -> nonCommaAnalyzeSentence(syllables)));
+        }
         var currentIndex = 0;
         for (var subRes : subReses)
         {
@@ -710,374 +768,187 @@ public class VietnameseAnalyzer
 
     public static ArrayList<SegmentWord> nonCommaAnalyzeSentence(String sentence)
     {
-        var res = preNonCommaAnalyzeSentence(sentence);
+        return nonCommaAnalyzeSentence(toSyllables(sentence));
+    }
+
+    /**
+     * giống split("\\s") rồi bỏ các chuỗi rỗng
+     *
+     * @param sentence
+     * @return
+     */
+    public static ArrayList<String> toSyllables(String sentence)
+    {
+        return SentenceNormalizer.splitSyllables(sentence);
+    }
+
+    /**
+     * tách từ rồi ép từ loại V hoặc E xuất hiện nhiều nhất, hai phía của nó được tách lại như hai câu riêng;
+     * các từ bị ép chỉ là ranh giới trong cùng một lưới nên lưới và trọng số cạnh chỉ được tính một lần
+     *
+     * @param syllables
+     * @return
+     */
+    public static ArrayList<SegmentWord> nonCommaAnalyzeSentence(ArrayList<String> syllables)
+    {
+        var wordApps = getWordAppearances();
         var splitTypes = new String[]{"V", "E"};
-        if (!Utilities.anyTrue(res, x -> Utilities.memberQ(splitTypes, x.Type)))
-            return res;
-        else
+        var segmenter = makeSegmentLattice(syllables);
+        var weights = new HashMap<SegmentWord, HashMap<SegmentWord, Double>>();
+        var res = segmentLattice(segmenter, syllables, weights);
+        while (true)
         {
-            var wordApps = getWordAppearances();
-            var EVVs = NullFunction.createInstance(() ->
-            {
-                var aux = Utilities.makeHashSet(Utilities.select(res,
-                        x -> Utilities.memberQ(splitTypes, x.Type)
-                ));
-                var maxEle = Utilities.maxBy(aux,
-                        x -> wordApps.get(x.Word).get(x.Type)
-                );
-                var auxRes = new HashSet<SegmentWord>();
-                auxRes.add(maxEle);
-                return auxRes;
-            }).apply();
-            var segArrays = new ArrayList<ArrayList<SegmentWord>>();
-            var ar = new ArrayList<SegmentWord>();
-            for (var segWord : res)
+            // mỗi đoạn giữa hai từ bị ép có một từ được ép tiếp nếu đoạn đó còn từ V, E
+            var pivots = new ArrayList<SegmentWord>();
+            SegmentWord pivot = null;
+            for (var i = 0; i <= res.size(); i++)
             {
-                if (EVVs.contains(segWord))
+                var segWord = i <= res.size() - 1 ? res.get(i) : null;
+                if (segWord == null || segmenter.isForced(segWord))
                 {
-                    segArrays.add(ar);
-                    segArrays.add(new CustomArrayList<>(new SegmentWord[]{segWord}));
-                    ar = new ArrayList<>();
-                } else ar.add(segWord);
+                    if (pivot != null)
+                        pivots.add(pivot);
+                    pivot = null;
+                } else if (Utilities.memberQ(splitTypes, segWord.Type))
+                    if (pivot == null || wordApps.get(segWord.Word).get(segWord.Type) > wordApps.get(pivot.Word).get(pivot.Type))
+                        pivot = segWord;
             }
-            segArrays.add(ar);
-            var subReses = Utilities.map(
-                    (ArrayList<SegmentWord> segArray) ->
-                    {
-                        if (segArray.size() == 0)
-                            return segArray;
-                        if (segArray.size() == 1 && Utilities.isIntersecting(EVVs, segArray))
-                            return segArray;
-                        var jointWord = "";
-                        for (var i = 0; i <= segArray.size() - 1; i++)
-                        {
-                            if (i > 0)
-                                jointWord += " ";
-                            jointWord += segArray.get(i).Word;
-                        }
-//                        System.out.println(jointWord);
-                        return nonCommaAnalyzeSentence(jointWord);
-                    }
-                    , segArrays);
-            var mainRes = NullFunction.createInstance(() ->
-            {
-                var aux = new ArrayList<SegmentWord>();
-                for (var ele : subReses)
-                    aux.addAll(ele);
-                return aux;
-            }).apply();
-            var currentIndex = 0;
-            for (var segWord : mainRes)
-            {
-                var start = segWord.Start;
-                var end = segWord.End;
-                segWord.Start = currentIndex;
-                segWord.End = currentIndex + (end - start);
-                currentIndex = segWord.End + 1;
-            }
-            return mainRes;
+            if (pivots.size() == 0)
+                return res;
+            for (var segWord : pivots)
+                segmenter.force(segWord);
+            res = segmentLattice(segmenter, syllables, weights);
         }
     }
 
     public static ArrayList<SegmentWord> preNonCommaAnalyzeSentence(String sentence)
     {
-        var words = NullFunction.createInstance(() ->
-        {
-            var aux = (ArrayList<String>) Utilities.toArrayList(sentence.split("\\s"));
-            return Utilities.select(aux,
-                    x -> x.length() != 0
-            );
-        }).apply();
-        var vs = new HashSet<SegmentWord>();
-        var wordAppearances = getWordAppearances();
-        for (var i = 0; i <= words.size() - 1; i++)
-            for (var j = i; j <= words.size() - 1; j++)
-            {
-                var subWords = Utilities.part(words, i, j);
-                var joinWord = "";
-                for (var k = 0; k <= subWords.size() - 1; k++)
-                {
-                    if (k > 0)
-                        joinWord = joinWord + " ";
-                    joinWord = joinWord + subWords.get(k);
-                }
-                if (wordAppearances.containsKey(joinWord))
-                    for (var type : wordAppearances.get(joinWord).keySet())
-                    {
-                        var segWord = new SegmentWord(joinWord, type, i, j);
-                        vs.add(segWord);
-                    }
-            }
-        var g = Graph.relationGraph(vs,
-                (x, y) -> y.Start - x.End == 1
-        );
-
-        var errorWord = Utilities.firstCase(Utilities.range(0, words.size() - 1),
-                i -> !Utilities.anyTrue(g.vertexList(), x -> x.Start <= i && i <= x.End), (Integer) null
-        );
-        if (errorWord != null)
-            throw new RuntimeException("Unable to process at the word '" + words.get(errorWord) + "'");
-        var nextTypes = getNextTypes();
-        var beforeTypes = getBeforeTypes();
-        for (var ed : ((Graph<SegmentWord>) (Object) g).edgeList())
-        {
-            var v0 = ed.get(0);
-            var v1 = ed.get(1);
-            var lS = NullFunction.createInstance(() ->
-            {
-                return getNextBeforeLeastSquare();
-            }).apply();
-            var nextWeight = NullFunction.createInstance(() ->
-            {
-                if (Utilities.keySequenceExistsQ(nextTypes, v0.Word, v0.Type))
-                {
-                    var corres = nextTypes.get(v0.Word).get(v0.Type);
-                    var sum = Utilities.sum(
-                            x -> isSimilarType(x, v1.Type) ? corres.get(x) : 0,
-                            corres.keySet());
-                    return sum;
-                } else return 0d;
-            }).apply();
-            var beforeWeight = NullFunction.createInstance(() ->
-            {
-                if (Utilities.keySequenceExistsQ(beforeTypes, v1.Word, v1.Type))
-                {
-                    var corres = beforeTypes.get(v1.Word).get(v1.Type);
-                    var sum = Utilities.sum(
-                            x -> isSimilarType(x, v0.Type) ? corres.get(x) : 0,
-                            corres.keySet());
-                    return sum;
-                } else return 0d;
-            }).apply();
-            var prods = Utilities.mapThread(
-                    (x, y) -> x.doubleValue() * y.doubleValue(),
-                    (ArrayList<Number>) (Object) lS,
-                    (ArrayList<Number>) Utilities.toArrayList(new Number[]{
-                            wordAppearances.get(v0.Word).get(v0.Type),
-                            wordAppearances.get(v1.Word).get(v1.Type), nextWeight, beforeWeight
-                    })
-            );
-            g.setEdgeWeight(ed, Utilities.sum(prods));
-        }
-        BinaryFunction<SegmentWord, SegmentWord, Boolean> isSubword = (word0, word1) -> word1.Start <= word0.Start && word0.End <= word1.End;
-        for (var ed : g.edgeList())
-        {
-            var v0 = ed.get(0);
-            var v1 = ed.get(1);
-            if (Utilities.anyTrue(g.vertexList(), x -> isSubword.apply(v0, x) && isSubword.apply(v1, x)))
-            {
-                var auxVs = Utilities.select(g.edgeList(),
-                        x -> x.contains(v0) || x.contains(v1)
-                );
-                Utilities.map(x ->
-                {
-                    g.setEdgeWeight(x, -1d);
-                }, auxVs);
-            }
-        }
-        var edgeWeightf = new HashMap<ArrayList<SegmentWord>, Double>();
-        Utilities.map(x ->
-        {
-            edgeWeightf.put(x, -g.getEdgeWeight(x));
-        }, g.edgeList());
-        var firstVs = Utilities.select(g.vertexList(),
-                x -> x.Start == 0
-        );
-        var lastVs = Utilities.select(g.vertexList(),
-                x -> x.End == words.size() - 1
-        );
-        var h = (Graph<Object>) (Object) g.clone();
-        var objEdgeWeightf = (HashMap<ArrayList<Object>, Double>) (Object) edgeWeightf;
-        final var source = "s";
-        final var target = "t";
-        h.addVertex(source);
-        h.addVertex(target);
-        for (var v : firstVs)
-        {
-            h.addEdge(source, v);
-            h.setEdgeWeight(source, v, 0d);
-            var aux = new CustomArrayList<>(new Object[]{source, v});
-            objEdgeWeightf.put(aux, 0d);
-        }
-        for (var v : lastVs)
-        {
-            h.addEdge(v, target);
-            h.setEdgeWeight(v, target, 0d);
-            var aux = new CustomArrayList<>(new Object[]{v, target});
-            objEdgeWeightf.put(aux, 0d);
-        }
-        var stRes = h.shortestPath(source, target, objEdgeWeightf);
-        if (stRes == null)
-        {
-            var outCompos = NullFunction.createInstance(() ->
-            {
-                var aux = h.vertexOutComponent(source);
-                Utilities.deleteCases(aux,
-                        x -> x instanceof String
-                );
-                return (Collection<SegmentWord>) (Object) aux;
-            }).apply();
-            var maxOutIndex = Utilities.max(Utilities.map(x -> x.End, outCompos));
-            var inCompos = NullFunction.createInstance(() ->
-            {
-                var aux0 = h.vertexInComponent(target);
-                Utilities.deleteCases(aux0, x -> x instanceof String);
-                var aux1 = (Collection<SegmentWord>) (Object) aux0;
-                var selectedVs = Utilities.select(aux1,
-                        x -> x.Start > maxOutIndex
-                );
-                return selectedVs;
-            }).apply();
-            var minInIndex = Utilities.min(Utilities.map(x -> x.Start, inCompos));
-            var errorWordRange = NullFunction.createInstance(() ->
-            {
-                var aux = Utilities.part(words, maxOutIndex + 1, minInIndex - 1);
-                var auxRes = "";
-                for (var i = 0; i <= aux.size() - 1; i++)
-                {
-                    if (i > 0)
-                        auxRes += " ";
-                    auxRes += aux.get(i);
-                }
-                return auxRes;
-            });
-            throw new RuntimeException("unable to process at '" + errorWordRange + "'");
-        }
-        UnaryFunction<ArrayList<SegmentWord>, Double> pathToWeight = (path) ->
-        {
-            var preRes = Utilities.table(i ->
-            {
-                var aux = new ArrayList<SegmentWord>();
-                aux.add(path.get(i));
-                aux.add(path.get(i + 1));
-                return edgeWeightf.get(aux);
-            }, 0, path.size() - 2);
-            return Utilities.sum(preRes);
-        };
-        var res = (ArrayList<SegmentWord>) (Object) Utilities.part(stRes, 1, stRes.size() - 2);
-        final var resWrapped = new AtomicReference<ArrayList<SegmentWord>>();
-        resWrapped.set(res);
-        while (true)
-        {
-            var metQ = false;
-            var deletedVs = Utilities.select(h.vertexList(), x ->
-            {
-                if (x instanceof String)
-                    return false;
-                var originX = (SegmentWord) x;
-                return Utilities.anyTrue(resWrapped.get(),
-                        y ->
-                        {
-                            var check = originX.Start == y.Start && originX.End == y.End;
-                            if (!check)
-                                return false;
-                            return wordAppearances.get(y.Word).get(y.Type) > wordAppearances.get(originX.Word).get(originX.Type);
-                        }
-                );
-            });
-//            if(deletedVs.size()==0)
-//                break;
-            h.deleteVertices(deletedVs);
-            for (var v : res)
-            {
-                var copiedH = h.clone();
-                copiedH.deleteVertex(v);
-                var stPath = copiedH.shortestPath(source, target, objEdgeWeightf);
-                if (stPath != null)
+        return preNonCommaAnalyzeSentence(toSyllables(sentence));
+    }
+
+    public static ArrayList<SegmentWord> preNonCommaAnalyzeSentence(ArrayList<String> words)
+    {
+        return segmentLattice(makeSegmentLattice(words), words, new HashMap<>());
+    }
+
+    private static LatticeSegmenter makeSegmentLattice(ArrayList<String> words)
+    {
+        getWordAppearances();
+        getNextTypes();
+        getBeforeTypes();
+        var lexicon = getModelIndex().getLexicon();
+        var candidates = new ArrayList<SegmentWord>();
+        for (var i = 0; i <= words.size() - 1; i++)
+            candidates.addAll(lexicon.wordsStartingAt(words, i));
+        var covered = new boolean[words.size()];
+        for (var x : candidates)
+            for (var k = x.Start; k <= x.End; k++)
+                covered[k] = true;
+        var errorWord = Utilities.firstCase(Utilities.range(0, words.size() - 1),
+                i -> !covered[i], (Integer) null
+        );
+        if (errorWord != null)
+            throw new RuntimeException("Unable to process at the word '" + words.get(errorWord) + "'");
+        return new LatticeSegmenter(candidates, words.size());
+    }
+
+    /**
+     * @param weights trọng số của các cạnh đã tính, dùng lại giữa các lần duyệt trên cùng một lưới
+     */
+    private static ArrayList<SegmentWord> segmentLattice(LatticeSegmenter segmenter, ArrayList<String> words,
+                                                         HashMap<SegmentWord, HashMap<SegmentWord, Double>> weights)
+    {
+        var wordAppearances = getWordAppearances();
+        var index = getModelIndex();
+        var lS = getNextBeforeLeastSquare();
+        // hai từ liền nhau cùng nằm trong một từ dài hơn thì mọi cạnh của hai từ đó có trọng số -1
+        var penalized = segmenter.getContainedAdjacentWords();
+        var res = segmenter.segment(
+                (v0, v1) ->
                 {
-                    var auxPath = (ArrayList<SegmentWord>) (Object) Utilities.part(stPath, 1, stPath.size() - 2);
-                    if (pathToWeight.apply(auxPath) <= pathToWeight.apply(res))
+                    if (penalized.contains(v0) || penalized.contains(v1))
+                        return 1d;
+                    var v0Weights = weights.computeIfAbsent(v0, x -> new HashMap<>());
+                    var weight = v0Weights.get(v1);
+                    if (weight == null)
                     {
-                        res = auxPath;
-                        resWrapped.set(res);
-                        h.deleteVertex(v);
-                        h.deleteEdges(h.edgeList());
-                        h.addEdges(copiedH.edgeList());
-                        Utilities.map(
-                                ed ->
-                                {
-                                    h.setEdgeWeight(ed, copiedH.getEdgeWeight(ed));
-                                }, h.edgeList());
-                        metQ = true;
-                        break;
+                        var nextWeight = (double) index.getNextTypeWeight(v0.Word, v0.Type, v1.Type);
+                        var beforeWeight = (double) index.getBeforeTypeWeight(v1.Word, v1.Type, v0.Type);
+                        weight = 0d;
+                        weight += lS.get(0) * wordAppearances.get(v0.Word).get(v0.Type).doubleValue();
+                        weight += lS.get(1) * wordAppearances.get(v1.Word).get(v1.Type).doubleValue();
+                        weight += lS.get(2) * nextWeight;
+                        weight += lS.get(3) * beforeWeight;
+                        v0Weights.put(v1, weight);
                     }
-                }
-            }
-            if (!metQ)
-                break;
+                    return -weight;
+                },
+                x -> wordAppearances.get(x.Word).get(x.Type)
+        );
+        if (res == null)
+        {
+            var range = segmenter.unreachableRange();
+            var errorWordRange = String.join(" ", Utilities.part(words, range[0], range[1]));
+            throw new RuntimeException("unable to process at '" + errorWordRange + "'");
         }
         return res;
     }
 
+    /**
+     * chọn kiểu cho từng từ của câu bằng Viterbi: dãy kiểu có tổng trọng số NextTypes giữa các từ
+     * liền nhau lớn nhất, mỗi vị trí chỉ xét các kiểu của vị trí trước nên chỉ cần một lần duyệt
+     *
+     * @param sentence
+     * @return
+     */
     public static ArrayList<WordVertex> chooseTypes(ArrayList<String> sentence)
     {
+        var res = new ArrayList<WordVertex>();
+        var n = sentence.size();
+        if (n == 0)
+            return res;
         var wordAppearances = getWordAppearances();
-        var vs = new HashSet<WordVertex>();
-        for (var i = 0; i <= sentence.size() - 1; i++)
-        {
-            var iWord = sentence.get(i);
-            var types = wordAppearances.get(iWord).keySet();
-            for (var type : types)
-            {
-                var wordVertex = new WordVertex(i, iWord, type);
-                vs.add(wordVertex);
-            }
-        }
-        var g = Graph.relationGraph(vs,
-                (x, y) -> y.Location - x.Location == 1
-        );
-        var nextTypes = getNextTypes();
-        for (var ed : g.edgeList())
-        {
-            var v0 = ed.get(0);
-            var v1 = ed.get(1);
-            if (Utilities.keySequenceExistsQ(nextTypes, v0.Word, v0.Type))
-                g.setEdgeWeight(ed,
-                        Utilities.sum(x -> (isSimilarType(x, v1.Type) ? nextTypes.get(v0.Word).get(v0.Type).get(x) : 0),
-                                nextTypes.get(v0.Word).get(v0.Type).keySet())
-                );
-            else g.setEdgeWeight(ed, 0);
-        }
-        var maxEdgeWeight = Utilities.maxBy(
-                Utilities.map((ArrayList<WordVertex> x) -> g.getEdgeWeight(x),
-                        g.edgeList()), y -> y
-        );
-        var edgeWeightf = new HashMap<ArrayList<WordVertex>, Double>();
-        Utilities.map(
-                ed ->
-                {
-                    edgeWeightf.put(ed, maxEdgeWeight - g.getEdgeWeight(ed));
-                }, g.edgeList()
-        );
-        var firstVs = Utilities.select(g.vertexList(),
-                x -> g.vertexInDegree(x) == 0
-        );
-        var lastVs = Utilities.select(g.vertexList(),
-                x -> g.vertexOutDegree(x) == 0
-        );
-        var paths = new ArrayList<ArrayList<WordVertex>>();
-        for (var v0 : firstVs)
-            for (var v1 : lastVs)
-            {
-                var path = g.shortestPath(v0, v1, edgeWeightf);
-                if (path != null)
-                    paths.add(path);
-            }
-        var res = Utilities.minBy(paths,
-                path ->
-                {
-                    var eds = Utilities.table(
-                            (i) ->
-                            {
-                                var ed = new ArrayList<WordVertex>();
-                                ed.add(path.get(i));
-                                ed.add(path.get(i + 1));
-                                return edgeWeightf.get(ed);
-                            }
-                            , 0, path.size() - 2);
-                    return Utilities.sum(eds);
+        getNextTypes();
+        var index = getModelIndex();
+        var types = new ArrayList<ArrayList<String>>();
+        for (var i = 0; i <= n - 1; i++)
+            types.add(new ArrayList<>(wordAppearances.get(sentence.get(i)).keySet()));
+        var scores = new long[types.get(0).size()];
+        // previous[i][t] là kiểu tốt nhất ở vị trí i - 1 khi vị trí i có kiểu t
+        var previous = new int[n][];
+        for (var i = 1; i <= n - 1; i++)
+        {
+            var word = sentence.get(i - 1);
+            var iTypes = types.get(i);
+            var beforeTypes = types.get(i - 1);
+            var iScores = new long[iTypes.size()];
+            var iPrevious = new int[iTypes.size()];
+            for (var t = 0; t <= iTypes.size() - 1; t++)
+            {
+                iPrevious[t] = -1;
+                for (var u = 0; u <= beforeTypes.size() - 1; u++)
+                {
+                    var score = scores[u] + index.getNextTypeWeight(word, beforeTypes.get(u), iTypes.get(t));
+                    if (iPrevious[t] == -1 || score > iScores[t])
+                    {
+                        iScores[t] = score;
+                        iPrevious[t] = u;
+                    }
                 }
-        );
+            }
+            scores = iScores;
+            previous[i] = iPrevious;
+        }
+        var last = 0;
+        for (var t = 1; t <= scores.length - 1; t++)
+            if (scores[t] > scores[last])
+                last = t;
+        var chosen = new int[n];
+        chosen[n - 1] = last;
+        for (var i = n - 1; i >= 1; i--)
+            chosen[i - 1] = previous[i][chosen[i]];
+        for (var i = 0; i <= n - 1; i++)
+            res.add(new WordVertex(i, sentence.get(i), types.get(i).get(chosen[i])));
         return res;
     }
 
@@ -1087,7 +958,7 @@ public class VietnameseAnalyzer
     {
         if (BeforeTypes != null)
             return BeforeTypes;
-        BeforeTypes = getConnectingTypes("before");
+        TreebankStatistics.run(ParsedTreebank, connectingTypesAccumulator("before", x -> BeforeTypes = x));
         return BeforeTypes;
     }
 
@@ -1097,56 +968,66 @@ public class VietnameseAnalyzer
     {
         if (NextTypes != null)
             return NextTypes;
-        NextTypes = getConnectingTypes("next");
+        TreebankStatistics.run(ParsedTreebank, connectingTypesAccumulator("next", x -> NextTypes = x));
         return NextTypes;
     }
 
     public static HashMap<String, HashMap<String, HashMap<String, Integer>>> getConnectingTypes(String direction)
     {
-        var res = new HashMap<String, HashMap<String, HashMap<String, Integer>>>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            var vs = Utilities.makeArrayList(tree.vertexList());
-            Utilities.sortBy(vs, x -> x.Location);
-            for (var i = 0; i <= vs.size() - 2; i++)
-            {
-                var iV = vs.get(i);
-                var nextIV = vs.get(i + 1);
-                if (nextIV.Location - iV.Location == 1)
+        var res = new AtomicReference<HashMap<String, HashMap<String, HashMap<String, Integer>>>>();
+        TreebankStatistics.run(ParsedTreebank, connectingTypesAccumulator(direction, x -> res.set(x)));
+        return res.get();
+    }
+
+    private static TreebankAccumulator<HashMap<String, HashMap<String, HashMap<String, Integer>>>> connectingTypesAccumulator(
+            String direction, UnaryAction<HashMap<String, HashMap<String, HashMap<String, Integer>>>> finisher)
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, HashMap<String, HashMap<String, Integer>>>(),
+                (res, tree) ->
                 {
-                    switch (direction)
+                    var vs = Utilities.makeArrayList(tree.vertexList());
+                    Utilities.sortBy(vs, x -> x.Location);
+                    for (var i = 0; i <= vs.size() - 2; i++)
                     {
-                        case "next":
-                            Utilities.insertValue(res,
-                                    new Object[]{iV.Word, iV.Type, nextIV.Type},
-                                    0, x -> x + 1
-                            );
-                            break;
-                        case "before":
-                            Utilities.insertValue(res,
-                                    new Object[]{nextIV.Word, nextIV.Type, iV.Type},
-                                    0, x -> x + 1
-                            );
-                            break;
-                        default:
-                            throw new RuntimeException("direction error");
+                        var iV = vs.get(i);
+                        var nextIV = vs.get(i + 1);
+                        if (nextIV.Location - iV.Location == 1)
+                        {
+                            switch (direction)
+                            {
+                                case "next":
+                                    Utilities.insertValue(res,
+                                            new Object[]{iV.Word, iV.Type, nextIV.Type},
+                                            0, x -> x + 1
+                                    );
+                                    break;
+                                case "before":
+                                    Utilities.insertValue(res,
+                                            new Object[]{nextIV.Word, nextIV.Type, iV.Type},
+                                            0, x -> x + 1
+                                    );
+                                    break;
+                                default:
+                                    throw new RuntimeException("direction error");
+                            }
+                        }
                     }
-                }
-            }
-//            for (var v : vs)
-//            {
-//                var nextV = Utilities.firstCase(vs,
-//                        x -> x.Location - v.Location == 1, (WordVertex) null
-//                );
-//                if (nextV != null)
-//                    Utilities.insertValue(res,
-//                            new Object[]{v.Word, v.Type, nextV.Type},
-//                            0, x -> x + 1
-//                    );
-//            }
-        }
-        return res;
+//                    for (var v : vs)
+//                    {
+//                        var nextV = Utilities.firstCase(vs,
+//                                x -> x.Location - v.Location == 1, (WordVertex) null
+//                        );
+//                        if (nextV != null)
+//                            Utilities.insertValue(res,
+//                                    new Object[]{v.Word, v.Type, nextV.Type},
+//                                    0, x -> x + 1
+//                            );
+//                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                finisher
+        );
     }
 
     public static boolean isPronounAdverbPropertyError(Graph<WordVertex> tree, WordVertex v)
@@ -1198,64 +1079,74 @@ public class VietnameseAnalyzer
     {
         if (PronounAdverbProperties != null)
             return PronounAdverbProperties;
-        var counter = new HashMap<String, HashMap<String, Integer>>();
+        TreebankStatistics.run(ParsedTreebank, pronounAdverbPropertiesAccumulator());
+        return PronounAdverbProperties;
+    }
+
+    private static TreebankAccumulator<HashMap<String, HashMap<String, Integer>>> pronounAdverbPropertiesAccumulator()
+    {
         final var advStr = "adverb";
         final var nonAdvStr = "nonAdverb";
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var v : tree.vertexList())
-            {
-                if (v.Type.equals("P"))
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, HashMap<String, Integer>>(),
+                (counter, tree) ->
                 {
-                    if (isPLikeAdverb(tree, v))
-                        Utilities.insertValue(counter,
-                                new Object[]{v.Word, advStr}, 0, x -> x + 1
-                        );
-                    else
-                        Utilities.insertValue(counter,
-                                new Object[]{v.Word, nonAdvStr}, 0, x -> x + 1
-                        );
-                }
-            }
-        }
-        var sums = Utilities.map(key ->
-        {
-            var corres = counter.get(key);
-            return Utilities.sum(corres.values());
-        }, counter.keySet());
-        var sumMean = Utilities.mean(sums);
-        Utilities.removeKeys(counter,
-                key ->
+                    for (var v : tree.vertexList())
+                    {
+                        if (v.Type.equals("P"))
+                        {
+                            if (isPLikeAdverb(tree, v))
+                                Utilities.insertValue(counter,
+                                        new Object[]{v.Word, advStr}, 0, x -> x + 1
+                                );
+                            else
+                                Utilities.insertValue(counter,
+                                        new Object[]{v.Word, nonAdvStr}, 0, x -> x + 1
+                                );
+                        }
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                counter ->
                 {
-                    var corres = counter.get(key);
-                    var sum = Utilities.sum(corres.values());
-                    return sum < sumMean;
+                    var sums = Utilities.map(key ->
+                    {
+                        var corres = counter.get(key);
+                        return Utilities.sum(corres.values());
+                    }, counter.keySet());
+                    var sumMean = Utilities.mean(sums);
+                    Utilities.removeKeys(counter,
+                            key ->
+                            {
+                                var corres = counter.get(key);
+                                var sum = Utilities.sum(corres.values());
+                                return sum < sumMean;
+                            }
+                    );
+                    var pairs = Utilities.map(key ->
+                    {
+                        var corres = counter.get(key);
+                        var values = Utilities.makeArrayList(corres.values());
+                        if (values.size() == 1)
+                            values.add(0);
+                        Utilities.sortBy(values, x -> x);
+                        return values;
+                    }, counter.keySet());
+                    var lS = getLeastSquares((ArrayList<ArrayList<? extends Number>>) (Object) pairs).get(0);
+                    var res = new HashMap<String, String>();
+                    for (var P : counter.keySet())
+                    {
+                        var corres = counter.get(P);
+                        var advValue = corres.containsKey(advStr) ? corres.get(advStr) : 0;
+                        var nonAdvValue = corres.containsKey(nonAdvStr) ? corres.get(nonAdvStr) : 0;
+                        if (advValue > lS * nonAdvValue)
+                            res.put(P, advStr);
+                        else if (nonAdvValue > lS * advValue)
+                            res.put(P, nonAdvStr);
+                    }
+                    PronounAdverbProperties = res;
                 }
         );
-        var pairs = Utilities.map(key ->
-        {
-            var corres = counter.get(key);
-            var values = Utilities.makeArrayList(corres.values());
-            if (values.size() == 1)
-                values.add(0);
-            Utilities.sortBy(values, x -> x);
-            return values;
-        }, counter.keySet());
-        var lS = getLeastSquares((ArrayList<ArrayList<? extends Number>>) (Object) pairs).get(0);
-        var res = new HashMap<String, String>();
-        for (var P : counter.keySet())
-        {
-            var corres = counter.get(P);
-            var advValue = corres.containsKey(advStr) ? corres.get(advStr) : 0;
-            var nonAdvValue = corres.containsKey(nonAdvStr) ? corres.get(nonAdvStr) : 0;
-            if (advValue > lS * nonAdvValue)
-                res.put(P, advStr);
-            else if (nonAdvValue > lS * advValue)
-                res.put(P, nonAdvStr);
-        }
-        PronounAdverbProperties = res;
-        return res;
     }
 
     public static ArrayList<String> getClosestToRootPattern(Graph<WordVertex> tree)
@@ -1278,39 +1169,50 @@ public class VietnameseAnalyzer
     {
         if (RootLocalStructures != null)
             return RootLocalStructures;
-        var res = new HashMap<Integer, HashMap<ArrayList<String>, Integer>>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            if (!isSpanningTree(tree))
-                continue;
-            var root = getRoot(tree);
-            if (!root.Type.equals("V"))
-                continue;
-            tree.deleteVertices(x -> isAdverb(tree, x));
-            var pattern = getClosestToRootPattern(tree);
-            if (pattern == null)
-                continue;
-            for (var i = 1; i <= pattern.size() - 1; i++)
-            {
-                if (i + 1 > 4)
-                    break;
-                var subPattern = Utilities.part(pattern, 0, i);
-                Utilities.insertValue(res,
-                        new Object[]{i + 1, subPattern}, 0, x -> x + 1
-                );
-            }
-        }
-        for (var length : res.keySet())
-        {
-            var corres = res.get(length);
-            var mean = Utilities.mean(corres.values());
-            Utilities.removeKeys(corres,
-                    x -> corres.get(x) < mean
-            );
-        }
-        RootLocalStructures = res;
-        return res;
+        TreebankStatistics.run(ParsedTreebank, rootLocalStructuresAccumulator());
+        return RootLocalStructures;
+    }
+
+    private static TreebankAccumulator<HashMap<Integer, HashMap<ArrayList<String>, Integer>>> rootLocalStructuresAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<Integer, HashMap<ArrayList<String>, Integer>>(),
+                (res, sharedTree) ->
+                {
+                    var tree = sharedTree.clone();
+                    if (!isSpanningTree(tree))
+                        return;
+                    var root = getRoot(tree);
+                    if (!root.Type.equals("V"))
+                        return;
+                    tree.deleteVertices(x -> isAdverb(tree, x));
+                    var pattern = getClosestToRootPattern(tree);
+                    if (pattern == null)
+                        return;
+                    for (var i = 1; i <= pattern.size() - 1; i++)
+                    {
+                        if (i + 1 > 4)
+                            break;
+                        var subPattern = Utilities.part(pattern, 0, i);
+                        Utilities.insertValue(res,
+                                new Object[]{i + 1, subPattern}, 0, x -> x + 1
+                        );
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                res ->
+                {
+                    for (var length : res.keySet())
+                    {
+                        var corres = res.get(length);
+                        var mean = Utilities.mean(corres.values());
+                        Utilities.removeKeys(corres,
+                                x -> corres.get(x) < mean
+                        );
+                    }
+                    RootLocalStructures = res;
+                }
+        );
     }
 
     public static ArrayList<String> getFromLastTypePattern(Graph<WordVertex> tree)
@@ -1343,35 +1245,16 @@ public class VietnameseAnalyzer
 
     public static boolean isTernaryLocalError(Graph<WordVertex> tree, WordVertex v)
     {
-        var ternaryLocs = getTernaryLocals();
+        getTernaryLocals();
+        var index = getModelIndex();
         var inVs = Utilities.makeArrayList(Utilities.select(tree.inGoingVertices(v),
                 x -> !isAdverb(tree, x))
         );
         Utilities.sortBy(inVs, x -> x.Location);
         if (inVs.size() >= 2)
-            for (var i = 0; i <= inVs.size() - 2; i++)
-            {
-                var iEle = inVs.get(i);
-                var nextIEle = inVs.get(i + 1);
-                var ar = new WordVertex[]{v, iEle, nextIEle};
-                var locs = simplifyIndices(Utilities.map(x -> x.Location, ar));
-                var types = Utilities.map(x -> x.Type, ar);
-//                if (ternaryLocs.containsKey(locs))
-//                    if (!ternaryLocs.get(locs).containsKey(types))
-//                        return true;
-                return !(ternaryLocs.containsKey(locs) && ternaryLocs.get(locs).containsKey(types));
-            }
+            return !index.isTernaryLocal(v, inVs.get(0), inVs.get(1));
         else if (inVs.size() == 1)
-        {
-            var ele = inVs.get(0);
-            var ar = new WordVertex[]{v, ele};
-            var locs = simplifyIndices(Utilities.map(x -> x.Location, ar));
-            var types = Utilities.map(x -> x.Type, ar);
-//            if (ternaryLocs.containsKey(locs))
-//                if (!ternaryLocs.get(locs).containsKey(types))
-//                    return true;
-            return !(ternaryLocs.containsKey(locs) && ternaryLocs.get(locs).containsKey(types));
-        }
+            return !index.isTernaryLocal(v, inVs.get(0), null);
         return false;
     }
 
@@ -1381,70 +1264,81 @@ public class VietnameseAnalyzer
     {
         if (TernaryLocals != null)
             return TernaryLocals;
-        var counter = new HashMap<ArrayList<Integer>, HashMap<ArrayList<String>, Integer>>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            tree.deleteVertices(x -> isAdverb(tree, x));
-            for (var v : tree.vertexList())
-            {
-                var inVs = Utilities.makeArrayList(tree.inGoingVertices(v));
-                Utilities.sortBy(inVs, x -> x.Location);
-                if (inVs.size() >= 2)
-                    for (var i = 0; i <= inVs.size() - 2; i++)
+        TreebankStatistics.run(ParsedTreebank, ternaryLocalsAccumulator());
+        return TernaryLocals;
+    }
+
+    private static TreebankAccumulator<HashMap<ArrayList<Integer>, HashMap<ArrayList<String>, Integer>>> ternaryLocalsAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<ArrayList<Integer>, HashMap<ArrayList<String>, Integer>>(),
+                (counter, sharedTree) ->
+                {
+                    var tree = sharedTree.clone();
+                    tree.deleteVertices(x -> isAdverb(tree, x));
+                    for (var v : tree.vertexList())
                     {
-                        var iEle = inVs.get(i);
-                        var nextIEle = inVs.get(i + 1);
-                        var ar = new WordVertex[]{v, iEle, nextIEle};
-                        var indices = Utilities.map(x -> x.Location, ar);
-                        indices = simplifyIndices(indices);
-                        var typeTuple = Utilities.map(x -> x.Type, ar);
-                        Utilities.insertValue(counter,
-                                new Object[]{indices, typeTuple}, 0, x -> x + 1
-                        );
+                        var inVs = Utilities.makeArrayList(tree.inGoingVertices(v));
+                        Utilities.sortBy(inVs, x -> x.Location);
+                        if (inVs.size() >= 2)
+                            for (var i = 0; i <= inVs.size() - 2; i++)
+                            {
+                                var iEle = inVs.get(i);
+                                var nextIEle = inVs.get(i + 1);
+                                var ar = new WordVertex[]{v, iEle, nextIEle};
+                                var indices = Utilities.map(x -> x.Location, ar);
+                                indices = simplifyIndices(indices);
+                                var typeTuple = Utilities.map(x -> x.Type, ar);
+                                Utilities.insertValue(counter,
+                                        new Object[]{indices, typeTuple}, 0, x -> x + 1
+                                );
+                            }
+                        else if (inVs.size() == 1)
+                        {
+                            var ele = inVs.get(0);
+                            var ar = new WordVertex[]{v, ele};
+                            var indices = Utilities.map(x -> x.Location, ar);
+                            indices = simplifyIndices(indices);
+                            var typeTuple = Utilities.map(x -> x.Type, ar);
+                            Utilities.insertValue(counter,
+                                    new Object[]{indices, typeTuple}, 0, x -> x + 1
+                            );
+                        }
                     }
-                else if (inVs.size() == 1)
+                },
+                TreebankAccumulator::mergeCounts,
+                counter ->
                 {
-                    var ele = inVs.get(0);
-                    var ar = new WordVertex[]{v, ele};
-                    var indices = Utilities.map(x -> x.Location, ar);
-                    indices = simplifyIndices(indices);
-                    var typeTuple = Utilities.map(x -> x.Type, ar);
-                    Utilities.insertValue(counter,
-                            new Object[]{indices, typeTuple}, 0, x -> x + 1
-                    );
+                    var mean = Utilities.mean((Collection<Number>) (Object) getLeafValues(counter));
+                    var res = new HashMap<ArrayList<Integer>, HashMap<ArrayList<String>, Integer>>();
+                    for (var indices : counter.keySet())
+                        for (var typeTuple : counter.get(indices).keySet())
+                        {
+                            var value = counter.get(indices).get(typeTuple);
+                            if (value >= mean)
+                                Utilities.insertValue(res,
+                                        new Object[]{indices, typeTuple}, value
+                                );
+                        }
+                    TernaryLocals = res;
                 }
-            }
-        }
-        var mean = Utilities.mean((Collection<Number>) (Object) getLeafValues(counter));
-        var res = new HashMap<ArrayList<Integer>, HashMap<ArrayList<String>, Integer>>();
-        for (var indices : counter.keySet())
-            for (var typeTuple : counter.get(indices).keySet())
-            {
-                var value = counter.get(indices).get(typeTuple);
-                if (value >= mean)
-                    Utilities.insertValue(res,
-                            new Object[]{indices, typeTuple}, value
-                    );
-            }
-        TernaryLocals = res;
-        return res;
+        );
     }
 
     public static boolean isCloseSeparationError(Graph<WordVertex> tree, WordVertex v)
     {
         var nextVs = findClosestWordVertices(tree, v);
+        getCloseSeparation();
+        var index = getModelIndex();
         for (var nextV : nextVs)
         {
-            var typePair = new CustomArrayList<>(new String[]{v.Type, nextV.Type});
-            var cS = getCloseSeparation();
-            if (cS.containsKey(typePair))
+            var state = index.getCloseSeparation(v.Type, nextV.Type);
+            if (state != null)
             {
-                var state = cS.get(typePair);
                 if (state.equals("closed"))
                 {
                     {
-                        var closeMean = CloseCounter.get(typePair);
+                        var closeMean = index.getCloseMean(v.Type, nextV.Type);
                         var edWeight = getEdgeWeight(v, nextV);
                         if (edWeight >= closeMean)
                             if (!Utilities.anyTrue(tree.edgeList(), ed -> ed.contains(v) && ed.contains(nextV)))
@@ -1489,85 +1383,107 @@ public class VietnameseAnalyzer
     {
         if (CloseSeparation != null)
             return CloseSeparation;
-        var counter = new HashMap<ArrayList<String>, HashMap<String, Integer>>();
-        var closeCounter = new HashMap<ArrayList<String>, Double[]>();
+        TreebankStatistics.run(ParsedTreebank, closeSeparationAccumulator());
+        return CloseSeparation;
+    }
+
+    /**
+     * trạng thái gồm hai bảng {counter, closeCounter}, cần các bảng của getEdgeWeight
+     */
+    @SuppressWarnings("unchecked")
+    private static TreebankAccumulator<Object[]> closeSeparationAccumulator()
+    {
         final var closedStr = "closed";
         final var separatedStr = "separated";
-        final var closeCountStr = "closeCount";
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var v : tree.vertexList())
-            {
-                var nextVs = findClosestWordVertices(tree, v);
-                for (var nextV : nextVs)
+        return new TreebankAccumulator<>(
+                () ->
+                {
+                    getWordAppearancesToEdgeWeightLeastSquare();
+                    return new Object[]{
+                            new HashMap<ArrayList<String>, HashMap<String, Integer>>(),
+                            new HashMap<ArrayList<String>, Double[]>()
+                    };
+                },
+                (state, tree) ->
                 {
-                    if (Utilities.anyTrue(tree.edgeList(), ed -> ed.contains(v) && ed.contains(nextV)))
+                    var counter = (HashMap<ArrayList<String>, HashMap<String, Integer>>) state[0];
+                    var closeCounter = (HashMap<ArrayList<String>, Double[]>) state[1];
+                    for (var v : tree.vertexList())
                     {
-                        Utilities.insertValue(counter, new Object[]{
-                                new CustomArrayList<>(new String[]{v.Type, nextV.Type})
-                                , closedStr}, 0, x -> x + 1);
-                        Utilities.insertValue(closeCounter,
-                                new Object[]{new CustomArrayList<>(new String[]{v.Type, nextV.Type})},
-                                new Double[]{0d, 0d},
-                                x ->
-                                {
-                                    x[0] += getEdgeWeight(v, nextV);
-                                    x[1] += 1d;
-                                    return x;
-                                }
-                        );
-                    } else Utilities.insertValue(counter, new Object[]{
-                            new CustomArrayList<>(new String[]{v.Type, nextV.Type})
-                            , separatedStr}, 0, x -> x + 1);
-                }
-            }
-        }
-        var sums = Utilities.map(
-                x ->
+                        var nextVs = findClosestWordVertices(tree, v);
+                        for (var nextV : nextVs)
+                        {
+                            if (Utilities.anyTrue(tree.edgeList(), ed -> ed.contains(v) && ed.contains(nextV)))
+                            {
+                                Utilities.insertValue(counter, new Object[]{
+                                        new CustomArrayList<>(new String[]{v.Type, nextV.Type})
+                                        , closedStr}, 0, x -> x + 1);
+                                Utilities.insertValue(closeCounter,
+                                        new Object[]{new CustomArrayList<>(new String[]{v.Type, nextV.Type})},
+                                        new Double[]{0d, 0d},
+                                        x ->
+                                        {
+                                            x[0] += getEdgeWeight(v, nextV);
+                                            x[1] += 1d;
+                                            return x;
+                                        }
+                                );
+                            } else Utilities.insertValue(counter, new Object[]{
+                                    new CustomArrayList<>(new String[]{v.Type, nextV.Type})
+                                    , separatedStr}, 0, x -> x + 1);
+                        }
+                    }
+                },
+                state ->
                 {
-                    var aux = counter.get(x).values();
-                    return Utilities.sum(aux);
-                }, counter.keySet()
-        );
-        var sumMean = Utilities.mean(sums);
-        Utilities.removeKeys(counter, key -> Utilities.sum(counter.get(key).values()) < sumMean);
-        var appPairs = new ArrayList<ArrayList<Integer>>();
-        for (var typePair : counter.keySet())
-        {
-            var appPair = Utilities.makeArrayList(counter.get(typePair).values());
-            if (appPair.size() == 1)
-                appPair.add(0);
-            Utilities.sortBy(appPair, x -> x);
-            appPairs.add(appPair);
-        }
-        var lS = getLeastSquares((ArrayList<ArrayList<? extends Number>>) (Object) appPairs).get(0);
-        var res = new HashMap<ArrayList<String>, String>();
-        Utilities.map(key ->
-                {
-                    var clsp = counter.get(key);
-                    var closedValue = clsp.containsKey(closedStr) ? clsp.get(closedStr) : 0;
-                    var separatedValue = clsp.containsKey(separatedStr) ? clsp.get(separatedStr) : 0;
-                    if (closedValue > separatedValue * lS)
-                        Utilities.insertValue(res,
-                                new Object[]{key}, closedStr
-                        );
-                    else if (closedValue * lS < separatedValue)
-                        Utilities.insertValue(res,
-                                new Object[]{key}, separatedStr
-                        );
-                }, counter.keySet()
-        );
-//        res.remove(new CustomArrayList<>(new String[]{"V", "E"}));
-        Utilities.removeKeys(counter, x -> !res.containsKey(x));
-        Utilities.removeKeys(closeCounter, x -> !res.containsKey(x));
-        CloseCounter = new HashMap<>();
-        Utilities.insertValues(CloseCounter, closeCounter, () -> 0d,
-                (Double x, Double[] y) -> x + y[1].doubleValue() == 0d ? 1d : (y[0] / y[1])
+                    var counter = (HashMap<ArrayList<String>, HashMap<String, Integer>>) state[0];
+                    var closeCounter = (HashMap<ArrayList<String>, Double[]>) state[1];
+                    var sums = Utilities.map(
+                            x ->
+                            {
+                                var aux = counter.get(x).values();
+                                return Utilities.sum(aux);
+                            }, counter.keySet()
+                    );
+                    var sumMean = Utilities.mean(sums);
+                    Utilities.removeKeys(counter, key -> Utilities.sum(counter.get(key).values()) < sumMean);
+                    var appPairs = new ArrayList<ArrayList<Integer>>();
+                    for (var typePair : counter.keySet())
+                    {
+                        var appPair = Utilities.makeArrayList(counter.get(typePair).values());
+                        if (appPair.size() == 1)
+                            appPair.add(0);
+                        Utilities.sortBy(appPair, x -> x);
+                        appPairs.add(appPair);
+                    }
+                    var lS = getLeastSquares((ArrayList<ArrayList<? extends Number>>) (Object) appPairs).get(0);
+                    var res = new HashMap<ArrayList<String>, String>();
+                    Utilities.map(key ->
+                            {
+                                var clsp = counter.get(key);
+                                var closedValue = clsp.containsKey(closedStr) ? clsp.get(closedStr) : 0;
+                                var separatedValue = clsp.containsKey(separatedStr) ? clsp.get(separatedStr) : 0;
+                                if (closedValue > separatedValue * lS)
+                                    Utilities.insertValue(res,
+                                            new Object[]{key}, closedStr
+                                    );
+                                else if (closedValue * lS < separatedValue)
+                                    Utilities.insertValue(res,
+                                            new Object[]{key}, separatedStr
+                                    );
+                            }, counter.keySet()
+                    );
+//                  res.remove(new CustomArrayList<>(new String[]{"V", "E"}));
+                    Utilities.removeKeys(counter, x -> !res.containsKey(x));
+                    Utilities.removeKeys(closeCounter, x -> !res.containsKey(x));
+                    CloseCounter = new HashMap<>();
+                    Utilities.insertValues(CloseCounter, closeCounter, () -> 0d,
+                            (Double x, Double[] y) -> x + y[1].doubleValue() == 0d ? 1d : (y[0] / y[1])
+                    );
+//                  Utilities.executeMathematicaCode("MyObject=%0", counter);
+                    CloseSeparation = res;
+                }
         );
-//        Utilities.executeMathematicaCode("MyObject=%0", counter);
-        CloseSeparation = res;
-        return res;
     }
 
     public static boolean isNounMeaningSupplementError(Graph<WordVertex> tree, WordVertex v)
@@ -1615,9 +1531,8 @@ public class VietnameseAnalyzer
         if (EndingErrorPs != null)
             return EndingErrorPs;
         var counter = new HashMap<ArrayList<String>, Integer>();
-        for (var parser : Parsers)
+        for (var tree : ParsedTreebank)
         {
-            var tree = getDependenceGraph(parser);
             for (var v : tree.vertexList())
                 if (isTypeEndingError(tree, v, x -> x.Type.equals("P")))
                     Utilities.insertValue(counter,
@@ -1851,9 +1766,8 @@ public class VietnameseAnalyzer
         if (TypePerfectConnectingTypesError != null)
             return TypePerfectConnectingTypesError;
         HashMap<String, HashMap<String, HashMap<ArrayList<String>, Integer>>> res = new HashMap<>();
-        for (var parser : Parsers)
+        for (var tree : ParsedTreebank)
         {
-            var tree = getDependenceGraph(parser);
             var treeError = (HashMap<String, HashMap<String, HashMap<ArrayList<String>, Integer>>>) getTypePerfectConnectingTypesError(tree);
             Utilities.insertValues(res, treeError,
                     () -> 0,
@@ -2039,17 +1953,24 @@ public class VietnameseAnalyzer
     {
         if (VocabularyTypes != null)
             return VocabularyTypes;
-        var res = new HashSet<String>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var v : tree.vertexList())
-                res.add(v.Type);
-        }
-        VocabularyTypes = res;
+        TreebankStatistics.run(ParsedTreebank, vocabularyTypesAccumulator());
         return VocabularyTypes;
     }
 
+    private static TreebankAccumulator<HashSet<String>> vocabularyTypesAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashSet<String>(),
+                (res, tree) ->
+                {
+                    for (var v : tree.vertexList())
+                        res.add(v.Type);
+                },
+                TreebankAccumulator::mergeCounts,
+                res -> VocabularyTypes = res
+        );
+    }
+
     public static boolean isSimilarType(String type0, String type1)
     {
         if (type0.equals(type1))
@@ -2084,6 +2005,11 @@ public class VietnameseAnalyzer
         var root = Utilities.firstCase(vs, x -> tree.vertexOutDegree(x) == 0, (WordVertex) null);
         if (root == null)
             return null;
+        // mỗi cặp cạnh thay thế được thử trên một bản sao mảng cha của tree, chỉ cây tốt hơn mới được đổi lại thành Graph
+        var baseTree = HeadTree.of(tree.vertexList(), tree.edgeList());
+        if (baseTree == null)
+            return null;
+        var comparedTree = toComparedTree(tree);
         var remainVs = getSortedErrorWordVertices(tree);
         remainVs = Utilities.join(remainVs, Utilities.complement(tree.vertexList(), remainVs));
         Utilities.deleteCases(remainVs, (x) -> x.equals(root));
@@ -2106,15 +2032,15 @@ public class VietnameseAnalyzer
                     {
                         if (ied.equals(outiEd) && jed.equals(outjEd))
                             continue;
-                        var copiedTree = new Graph<WordVertex>(tree.vertexList(), tree.edgeList());
-                        copiedTree.deleteEdge(outiEd);
-                        copiedTree.deleteEdge(outjEd);
-                        copiedTree.addEdge(ied);
-                        copiedTree.addEdge(jed);
-                        if (isSpanningTree(copiedTree))
+                        var copiedTree = baseTree.copy();
+                        copiedTree.setHead(copiedTree.indexOf(outiEd.get(0)), -1);
+                        copiedTree.setHead(copiedTree.indexOf(outjEd.get(0)), -1);
+                        if (!addHeadEdge(copiedTree, ied) || !addHeadEdge(copiedTree, jed))
+                            continue;
+                        if (copiedTree.isSpanningTree())
                         {
-                            if (errorTreeCompare(copiedTree, tree) < 0)
-                                return copiedTree;
+                            if (errorTreeCompare(copiedTree, comparedTree, false) < 0)
+                                return copiedTree.toGraph();
                         }
                     }
             }
@@ -2122,6 +2048,22 @@ public class VietnameseAnalyzer
         return null;
     }
 
+    /**
+     * thêm cạnh ed vào tree nếu hai đỉnh của ed đều có trong tree và đỉnh đầu chưa có cạnh đi ra,
+     * các trường hợp còn lại không thể cho một cây khung
+     *
+     * @return false nếu không thêm được
+     */
+    private static boolean addHeadEdge(HeadTree tree, ArrayList<WordVertex> ed)
+    {
+        var tail = tree.indexOf(ed.get(0));
+        var head = tree.indexOf(ed.get(1));
+        if (tail == -1 || head == -1 || tree.getHead(tail) != -1)
+            return false;
+        tree.setHead(tail, head);
+        return true;
+    }
+
     public static boolean isSpanningTree(Graph<WordVertex> g)
     {
         var vs = g.vertexList();
@@ -2162,33 +2104,43 @@ public class VietnameseAnalyzer
     {
         if (AdverbPs != null)
             return AdverbPs;
-        var auxRes = new HashMap<String, HashMap<String, Integer>>();
+        TreebankStatistics.run(ParsedTreebank, adverbPsAccumulator());
+        return AdverbPs;
+    }
+
+    private static TreebankAccumulator<HashMap<String, HashMap<String, Integer>>> adverbPsAccumulator()
+    {
         final var outsideStr = "outside";
         final var insideStr = "inside";
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var v : tree.vertexList())
-            {
-                if (v.Type.equals("P"))
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, HashMap<String, Integer>>(),
+                (auxRes, tree) ->
                 {
-                    var loc = tree.vertexInDegree(v) == 0 ? outsideStr : insideStr;
-                    Utilities.insertValue(auxRes,
-                            new Object[]{v.Word, loc}, 0, (x) -> x + 1
-                    );
-                }
-            }
-        }
-        var res = Utilities.makeHashSet(Utilities.select(auxRes.keySet(),
-                        (x) ->
+                    for (var v : tree.vertexList())
+                    {
+                        if (v.Type.equals("P"))
                         {
-                            var counter = auxRes.get(x);
-                            return counter.containsKey(outsideStr) && !counter.containsKey(insideStr);
+                            var loc = tree.vertexInDegree(v) == 0 ? outsideStr : insideStr;
+                            Utilities.insertValue(auxRes,
+                                    new Object[]{v.Word, loc}, 0, (x) -> x + 1
+                            );
                         }
-                )
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                auxRes ->
+                {
+                    var res = Utilities.makeHashSet(Utilities.select(auxRes.keySet(),
+                                    (x) ->
+                                    {
+                                        var counter = auxRes.get(x);
+                                        return counter.containsKey(outsideStr) && !counter.containsKey(insideStr);
+                                    }
+                            )
+                    );
+                    AdverbPs = res;
+                }
         );
-        AdverbPs = res;
-        return AdverbPs;
     }
 
     public static boolean isAdverb(Graph<WordVertex> tree, WordVertex v)
@@ -2246,24 +2198,51 @@ public class VietnameseAnalyzer
     {
         if (ErrorPropertyImportance != null)
             return ErrorPropertyImportance;
-        var res = new HashMap<String, Integer>();
-        for (var parser : Parsers)
-        {
-            var auxg = getDependenceGraph(parser);
-            var errors = countErrors(auxg);
-            for (var name : errors.keySet())
-            {
-                var origin = (Collection) errors.get(name);
-                Utilities.insertValue(res,
-                        new Object[]{name},
-                        0, (x) -> x + origin.size()
-                );
-            }
-        }
-        ErrorPropertyImportance = res;
+        TreebankStatistics.run(ParsedTreebank, errorAppearanceStaticsAccumulator());
         return ErrorPropertyImportance;
     }
 
+    /**
+     * cần các bảng được dùng bởi countErrors, các bảng này được tính trước khi duyệt
+     * để các luồng chỉ đọc chúng
+     */
+    private static TreebankAccumulator<HashMap<String, Integer>> errorAppearanceStaticsAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () ->
+                {
+                    getWordAppearances();
+                    getEssentialOutsideTypes();
+                    getPronounAdverbProperties();
+                    getTernaryLocals();
+                    getCloseSeparation();
+                    getModelIndex();
+                    getVocabularyTypes();
+                    getTypePerfectPrecedingTypes();
+                    getTypePerfectFollowingTypes();
+                    getReducedTypeMap();
+                    getNounMissingVerbs();
+                    if (typePairDirectionLeastSquares == null)
+                        initializeTypePairDirectionLeastSquares();
+                    return new HashMap<String, Integer>();
+                },
+                (res, auxg) ->
+                {
+                    var errors = countErrors(auxg);
+                    for (var name : errors.keySet())
+                    {
+                        var origin = (Collection) errors.get(name);
+                        Utilities.insertValue(res,
+                                new Object[]{name},
+                                0, (x) -> x + origin.size()
+                        );
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                res -> ErrorPropertyImportance = res
+        );
+    }
+
 //    public static boolean isPerfectFollowingTypes(Graph<WordVertex> tree, ArrayList<WordVertex> ed)
 //    {
 //        var dir = getEdgeDirection(ed);
@@ -2337,46 +2316,59 @@ public class VietnameseAnalyzer
 
     public static HashMap<String, HashSet<ArrayList<String>>> getTypePerfectConnectingTypes(String loc, boolean withVariance)
     {
-        var counter = new HashMap<String, HashMap<ArrayList<String>, Integer>>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var v : tree.vertexList())
-            {
-                var selectedVs = Utilities.makeArrayList(Utilities.select(tree.inGoingVertices(v),
-                        (x) -> (loc.equals("following") ? x.Location > v.Location : x.Location < v.Location)
-                                && !isAdverb(tree, x)
-                ));
-                Utilities.sortBy(selectedVs, (x) -> x.Location);
-                var types = Utilities.map((x) -> x.Type, selectedVs);
-                Utilities.insertValue(counter,
-                        new Object[]{v.Type, types}, 0, (x) -> x + 1
-                );
-            }
-        }
-        var sums = new ArrayList<Integer>();
-        for (var type : counter.keySet())
-            sums.add((int) Utilities.sum(counter.get(type).values()));
-        var sumMean = Utilities.mean(sums);
-        var res = new HashMap<String, HashSet<ArrayList<String>>>();
-        for (var type : counter.keySet())
-        {
-            var corres = counter.get(type);
-            if (Utilities.sum(corres.values()) >= sumMean)
-            {
-                var values = corres.values();
-                var valueMean = Utilities.mean(values);
-                var variance = Utilities.variance(values);
-                var selectedTuples = Utilities.makeHashSet(Utilities.select(corres.keySet(),
-                        (x) -> corres.get(x) >= valueMean + (withVariance ? variance : 0)
-                ));
-                Utilities.insertValue(res,
-                        new Object[]{type},
-                        selectedTuples
-                );
-            }
-        }
-        return res;
+        var res = new AtomicReference<HashMap<String, HashSet<ArrayList<String>>>>();
+        TreebankStatistics.run(ParsedTreebank, typePerfectConnectingTypesAccumulator(loc, withVariance, x -> res.set(x)));
+        return res.get();
+    }
+
+    private static TreebankAccumulator<HashMap<String, HashMap<ArrayList<String>, Integer>>> typePerfectConnectingTypesAccumulator(
+            String loc, boolean withVariance, UnaryAction<HashMap<String, HashSet<ArrayList<String>>>> finisher)
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, HashMap<ArrayList<String>, Integer>>(),
+                (counter, tree) ->
+                {
+                    for (var v : tree.vertexList())
+                    {
+                        var selectedVs = Utilities.makeArrayList(Utilities.select(tree.inGoingVertices(v),
+                                (x) -> (loc.equals("following") ? x.Location > v.Location : x.Location < v.Location)
+                                        && !isAdverb(tree, x)
+                        ));
+                        Utilities.sortBy(selectedVs, (x) -> x.Location);
+                        var types = Utilities.map((x) -> x.Type, selectedVs);
+                        Utilities.insertValue(counter,
+                                new Object[]{v.Type, types}, 0, (x) -> x + 1
+                        );
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                counter ->
+                {
+                    var sums = new ArrayList<Integer>();
+                    for (var type : counter.keySet())
+                        sums.add((int) Utilities.sum(counter.get(type).values()));
+                    var sumMean = Utilities.mean(sums);
+                    var res = new HashMap<String, HashSet<ArrayList<String>>>();
+                    for (var type : counter.keySet())
+                    {
+                        var corres = counter.get(type);
+                        if (Utilities.sum(corres.values()) >= sumMean)
+                        {
+                            var values = corres.values();
+                            var valueMean = Utilities.mean(values);
+                            var variance = Utilities.variance(values);
+                            var selectedTuples = Utilities.makeHashSet(Utilities.select(corres.keySet(),
+                                    (x) -> corres.get(x) >= valueMean + (withVariance ? variance : 0)
+                            ));
+                            Utilities.insertValue(res,
+                                    new Object[]{type},
+                                    selectedTuples
+                            );
+                        }
+                    }
+                    finisher.apply(res);
+                }
+        );
     }
 
     public static HashMap<String, HashSet<ArrayList<String>>> TypePerfectPrecedingTypes = null;
@@ -2385,7 +2377,9 @@ public class VietnameseAnalyzer
     {
         if (TypePerfectPrecedingTypes != null)
             return TypePerfectPrecedingTypes;
-        TypePerfectPrecedingTypes = getTypePerfectConnectingTypes("preceding", false);
+        TreebankStatistics.run(ParsedTreebank, typePerfectConnectingTypesAccumulator("preceding", false,
+                x -> TypePerfectPrecedingTypes = x
+        ));
         return TypePerfectPrecedingTypes;
     }
 
@@ -2395,7 +2389,9 @@ public class VietnameseAnalyzer
     {
         if (TypePerfectFollowingTypes != null)
             return TypePerfectFollowingTypes;
-        TypePerfectFollowingTypes = getTypePerfectConnectingTypes("following", false);
+        TreebankStatistics.run(ParsedTreebank, typePerfectConnectingTypesAccumulator("following", false,
+                x -> TypePerfectFollowingTypes = x
+        ));
         return TypePerfectFollowingTypes;
     }
 
@@ -2451,52 +2447,62 @@ public class VietnameseAnalyzer
     {
         if (TypePerfectAttachings != null)
             return TypePerfectAttachings;
-        var counter = new HashMap<>();
-        for (var parser : Parsers)
-        {
-            var g = getDependenceGraph(parser);
-            for (var ed : g.edgeList())
-            {
-                Utilities.insertValue(counter,
-                        new Object[]{ed.get(0).Type, getEdgeDirection(ed), ed.get(1).Type},
-                        0, (x) -> x + 1
-                );
-            }
-        }
-        var sums = new ArrayList<Integer>();
-        for (var type : counter.keySet())
-            for (var dir : new String[]{"next", "before"})
-            {
-                if (Utilities.keySequenceExistsQ(counter, type, dir))
-                {
-                    var corres = (HashMap<String, Integer>) Utilities.getValue(counter, type, dir);
-                    sums.add((int) Utilities.sum(corres.values()));
-                }
-            }
-        var sumMean = Utilities.mean(sums);
-        HashMap<String, HashMap<String, HashSet<String>>> res = new HashMap<>();
-        for (var type : counter.keySet())
-            for (var dir : new String[]{"next", "before"})
-            {
-                if (Utilities.keySequenceExistsQ(counter, type, dir))
+        TreebankStatistics.run(ParsedTreebank, typePerfectAttachingsAccumulator());
+        return TypePerfectAttachings;
+    }
+
+    private static TreebankAccumulator<HashMap<Object, Object>> typePerfectAttachingsAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<Object, Object>(),
+                (counter, g) ->
                 {
-                    var corres = (HashMap<String, Integer>) Utilities.getValue(counter, type, dir);
-                    var values = corres.values();
-                    var valueMean = Utilities.mean(values);
-                    var sum = Utilities.sum(values);
-                    if (sum >= sumMean)
+                    for (var ed : g.edgeList())
                     {
-                        var selectedTypes = Utilities.select(corres.keySet(),
-                                (x) -> corres.get(x) >= valueMean
+                        Utilities.insertValue(counter,
+                                new Object[]{ed.get(0).Type, getEdgeDirection(ed), ed.get(1).Type},
+                                0, (x) -> x + 1
                         );
-                        Utilities.insertValue(res, new Object[]{type, dir},
-                                Utilities.makeHashSet(selectedTypes));
                     }
+                },
+                TreebankAccumulator::mergeCounts,
+                counter ->
+                {
+                    var sums = new ArrayList<Integer>();
+                    for (var type : counter.keySet())
+                        for (var dir : new String[]{"next", "before"})
+                        {
+                            if (Utilities.keySequenceExistsQ(counter, type, dir))
+                            {
+                                var corres = (HashMap<String, Integer>) Utilities.getValue(counter, type, dir);
+                                sums.add((int) Utilities.sum(corres.values()));
+                            }
+                        }
+                    var sumMean = Utilities.mean(sums);
+                    HashMap<String, HashMap<String, HashSet<String>>> res = new HashMap<>();
+                    for (var type : counter.keySet())
+                        for (var dir : new String[]{"next", "before"})
+                        {
+                            if (Utilities.keySequenceExistsQ(counter, type, dir))
+                            {
+                                var corres = (HashMap<String, Integer>) Utilities.getValue(counter, type, dir);
+                                var values = corres.values();
+                                var valueMean = Utilities.mean(values);
+                                var sum = Utilities.sum(values);
+                                if (sum >= sumMean)
+                                {
+                                    var selectedTypes = Utilities.select(corres.keySet(),
+                                            (x) -> corres.get(x) >= valueMean
+                                    );
+                                    Utilities.insertValue(res, new Object[]{type, dir},
+                                            Utilities.makeHashSet(selectedTypes));
+                                }
+                            }
+                        }
+                    /*Utilities.executeMathematicaCode("MyObject=%0",counter);*/
+                    TypePerfectAttachings = res;
                 }
-            }
-        /*Utilities.executeMathematicaCode("MyObject=%0",counter);*/
-        TypePerfectAttachings = res;
-        return TypePerfectAttachings;
+        );
     }
 
     public static boolean isMissingNoun(Graph<WordVertex> tree, WordVertex v)
@@ -2536,79 +2542,89 @@ public class VietnameseAnalyzer
     {
         if (NounMissingVerbs != null)
             return NounMissingVerbs;
-        var counter = new HashMap<>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var v : tree.vertexList())
-            {
-                if (tree.vertexOutDegree(v) == 0 || !v.Type.equals("V"))
-                    continue;
-                var leftVs = Utilities.select(
-                        Utilities.union(tree.inGoingVertices(v), tree.outGoingVertices(v)),
-                        (x) -> x.Location < v.Location
-                );
-                if (!Utilities.anyTrue(leftVs, (x) -> x.Type.startsWith("N") || x.Type.equals("P")))
+        TreebankStatistics.run(ParsedTreebank, nounMissingVerbsAccumulator());
+        return NounMissingVerbs;
+    }
+
+    private static TreebankAccumulator<HashMap<Object, Object>> nounMissingVerbsAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<Object, Object>(),
+                (counter, tree) ->
                 {
-                    var outV = Utilities.getFirstElement(tree.outGoingVertices(v));
-                    var dir = v.Location < outV.Location ? "next" : "before";
-                    var betweens = Utilities.select(tree.vertexList(),
-                            (x) ->
+                    for (var v : tree.vertexList())
+                    {
+                        if (tree.vertexOutDegree(v) == 0 || !v.Type.equals("V"))
+                            continue;
+                        var leftVs = Utilities.select(
+                                Utilities.union(tree.inGoingVertices(v), tree.outGoingVertices(v)),
+                                (x) -> x.Location < v.Location
+                        );
+                        if (!Utilities.anyTrue(leftVs, (x) -> x.Type.startsWith("N") || x.Type.equals("P")))
+                        {
+                            var outV = Utilities.getFirstElement(tree.outGoingVertices(v));
+                            var dir = v.Location < outV.Location ? "next" : "before";
+                            var betweens = Utilities.select(tree.vertexList(),
+                                    (x) ->
+                                    {
+                                        var locs = (ArrayList<Integer>) Utilities.toArrayList(new Integer[]{v.Location, x.Location, outV.Location});
+                                        var check0 = Utilities.isOrdered(locs, (z, t) -> z - t);
+                                        var check1 = Utilities.isOrdered(
+                                                (ArrayList<Integer>) (Object) Utilities.reverse(locs),
+                                                (z, t) -> z - t
+                                        );
+                                        if (!check0 && !check1)
+                                            return false;
+                                        return tree.findPath(x, v) == null && tree.findPath(v, x) == null;
+                                    }
+                            );
+                            for (var b : betweens)
                             {
-                                var locs = (ArrayList<Integer>) Utilities.toArrayList(new Integer[]{v.Location, x.Location, outV.Location});
-                                var check0 = Utilities.isOrdered(locs, (z, t) -> z - t);
-                                var check1 = Utilities.isOrdered(
-                                        (ArrayList<Integer>) (Object) Utilities.reverse(locs),
-                                        (z, t) -> z - t
+                                Utilities.insertValue(counter,
+                                        new Object[]{outV.Type, dir, b.Type}, 0, (x) -> x + 1
                                 );
-                                if (!check0 && !check1)
-                                    return false;
-                                return tree.findPath(x, v) == null && tree.findPath(v, x) == null;
                             }
-                    );
-                    for (var b : betweens)
-                    {
-                        Utilities.insertValue(counter,
-                                new Object[]{outV.Type, dir, b.Type}, 0, (x) -> x + 1
-                        );
+                        }
                     }
-                }
-            }
-        }
-        var counterOrigin = (HashMap<String, HashMap<String, HashMap<String, Integer>>>) (Object) counter;
-        var sums = new ArrayList<Integer>();
-        for (var type : counterOrigin.keySet())
-            for (var dir : new String[]{"next", "before"})
-            {
-                if (Utilities.keySequenceExistsQ(counterOrigin, type, dir))
-                {
-                    var values = counterOrigin.get(type).get(dir).values();
-                    sums.add((int) Utilities.sum(values));
-                }
-            }
-        var sumMean = Utilities.mean(sums);
-        /*System.out.println(sumMean);*/
-        var res = new HashMap<String, HashMap<String, HashSet<String>>>();
-        for (var type : counterOrigin.keySet())
-            for (var dir : new String[]{"next", "before"})
-            {
-                if (Utilities.keySequenceExistsQ(counterOrigin, type, dir))
+                },
+                TreebankAccumulator::mergeCounts,
+                counter ->
                 {
-                    var statics = counterOrigin.get(type).get(dir);
-                    var values = statics.values();
-                    if (Utilities.sum(values) >= sumMean)
-                    {
-                        var mean = Utilities.mean(values);
-                        var variance = Utilities.variance(values);
-                        var selectedTypes = Utilities.makeHashSet(Utilities.select(statics.keySet(),
-                                (x) -> statics.get(x) >= mean + variance
-                        ));
-                        Utilities.insertValue(res, new Object[]{type, dir}, selectedTypes);
-                    }
+                    var counterOrigin = (HashMap<String, HashMap<String, HashMap<String, Integer>>>) (Object) counter;
+                    var sums = new ArrayList<Integer>();
+                    for (var type : counterOrigin.keySet())
+                        for (var dir : new String[]{"next", "before"})
+                        {
+                            if (Utilities.keySequenceExistsQ(counterOrigin, type, dir))
+                            {
+                                var values = counterOrigin.get(type).get(dir).values();
+                                sums.add((int) Utilities.sum(values));
+                            }
+                        }
+                    var sumMean = Utilities.mean(sums);
+                    /*System.out.println(sumMean);*/
+                    var res = new HashMap<String, HashMap<String, HashSet<String>>>();
+                    for (var type : counterOrigin.keySet())
+                        for (var dir : new String[]{"next", "before"})
+                        {
+                            if (Utilities.keySequenceExistsQ(counterOrigin, type, dir))
+                            {
+                                var statics = counterOrigin.get(type).get(dir);
+                                var values = statics.values();
+                                if (Utilities.sum(values) >= sumMean)
+                                {
+                                    var mean = Utilities.mean(values);
+                                    var variance = Utilities.variance(values);
+                                    var selectedTypes = Utilities.makeHashSet(Utilities.select(statics.keySet(),
+                                            (x) -> statics.get(x) >= mean + variance
+                                    ));
+                                    Utilities.insertValue(res, new Object[]{type, dir}, selectedTypes);
+                                }
+                            }
+                        }
+                    NounMissingVerbs = res;
                 }
-            }
-        NounMissingVerbs = res;
-        return NounMissingVerbs;
+        );
     }
 
     public static boolean isEWordPerfectFollowingTypes(Graph<WordVertex> tree, WordVertex v)
@@ -2732,9 +2748,8 @@ public class VietnameseAnalyzer
     {
         var connectingCounter = new HashMap<ArrayList<String>, HashMap<ArrayList<String>, Integer>>();
         Utilities.executeMathematicaCode("MyObject=%0", connectingCounter);
-        for (var parser : Parsers)
+        for (var tree : ParsedTreebank)
         {
-            var tree = getDependenceGraph(parser);
             for (var v : tree.vertexList())
             {
                 var connectedVs = Utilities.makeArrayList(Utilities.select(tree.inGoingVertices(v),
@@ -2835,9 +2850,8 @@ public class VietnameseAnalyzer
         final var outsideStr = "outside";
         final var nextStr = "next";
         final var beforeStr = "before";
-        for (var parser : Parsers)
+        for (var tree : ParsedTreebank)
         {
-            var tree = getDependenceGraph(parser);
             for (var ed : tree.edgeList())
             {
                 var v0 = ed.get(0);
@@ -2917,9 +2931,8 @@ public class VietnameseAnalyzer
         if (TypePairInsideOutside != null)
             return TypePairInsideOutside;
         var res = new HashMap<>();
-        for (var parser : Parsers)
+        for (var tree : ParsedTreebank)
         {
-            var tree = getDependenceGraph(parser);
             for (var ed : tree.edgeList())
             {
                 var v0 = ed.get(0);
@@ -3034,6 +3047,7 @@ public class VietnameseAnalyzer
         var opts = new HashMap<String, Object>();
         opts.put("Step Number", 100);
         opts.put("Show Progress", false);
+        opts.put("Tolerance", 1e-12);
         var pR = Graph.pageRank(g, opts);
         Utilities.sortBy(list, (x) -> pR.get(x));
     }
@@ -3190,46 +3204,56 @@ public class VietnameseAnalyzer
 
     public static HashMap getWordConnectingTypes(String loc)
     {
-        var res = new HashMap();
+        var res = new AtomicReference<HashMap<Object, Object>>();
+        TreebankStatistics.run(ParsedTreebank, wordConnectingTypesAccumulator(loc, x -> res.set(x)));
+        return res.get();
+    }
+
+    private static TreebankAccumulator<HashMap<Object, Object>> wordConnectingTypesAccumulator(String loc,
+                                                                                      UnaryAction<HashMap<Object, Object>> finisher)
+    {
         final String undefinedStr = "undefined";
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var ed : tree.edgeList())
-            {
-                var v0 = ed.get(0);
-                var v1 = ed.get(1);
-                var direction = getEdgeDirection(ed);
-                if (loc.equals("incoming"))
-                {
-//                    if (!isAdverb(tree, v0))
-                    Utilities.insertValue(res,
-                            new Object[]{v1.Word, v1.Type, direction, v0.Type},
-                            0,
-                            (x) -> x + 1
-                    );
-                    if (tree.vertexInDegree(v0) == 0)
-                        Utilities.insertValue(res,
-                                new Object[]{v0.Word, v0.Type, undefinedStr},
-                                0, (x) -> x + 1
-                        );
-                } else
+        return new TreebankAccumulator<>(
+                () -> new HashMap<Object, Object>(),
+                (res, tree) ->
                 {
-//                    if (!isAdverb(tree, v1))
-                    Utilities.insertValue(res,
-                            new Object[]{v0.Word, v0.Type, direction, v1.Type},
-                            0,
-                            (x) -> x + 1
-                    );
-                    if (tree.vertexOutDegree(v1) == 0)
-                        Utilities.insertValue(res,
-                                new Object[]{v1.Word, v1.Type, undefinedStr},
-                                0, (x) -> x + 1
-                        );
-                }
-            }
-        }
-        return res;
+                    for (var ed : tree.edgeList())
+                    {
+                        var v0 = ed.get(0);
+                        var v1 = ed.get(1);
+                        var direction = getEdgeDirection(ed);
+                        if (loc.equals("incoming"))
+                        {
+//                            if (!isAdverb(tree, v0))
+                            Utilities.insertValue(res,
+                                    new Object[]{v1.Word, v1.Type, direction, v0.Type},
+                                    0,
+                                    (x) -> x + 1
+                            );
+                            if (tree.vertexInDegree(v0) == 0)
+                                Utilities.insertValue(res,
+                                        new Object[]{v0.Word, v0.Type, undefinedStr},
+                                        0, (x) -> x + 1
+                                );
+                        } else
+                        {
+//                            if (!isAdverb(tree, v1))
+                            Utilities.insertValue(res,
+                                    new Object[]{v0.Word, v0.Type, direction, v1.Type},
+                                    0,
+                                    (x) -> x + 1
+                            );
+                            if (tree.vertexOutDegree(v1) == 0)
+                                Utilities.insertValue(res,
+                                        new Object[]{v1.Word, v1.Type, undefinedStr},
+                                        0, (x) -> x + 1
+                                );
+                        }
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                finisher
+        );
     }
 
     /**
@@ -3240,9 +3264,8 @@ public class VietnameseAnalyzer
     public static void initializeTypePairWordApperance()
     {
         TypePairWordApperance = new HashMap<>();
-        for (var parser : Parsers)
+        for (var g : ParsedTreebank)
         {
-            var g = getDependenceGraph(parser);
             for (var ed : g.edgeList())
             {
                 var v0 = ed.get(0);
@@ -3374,9 +3397,8 @@ public class VietnameseAnalyzer
         if (LeafEdgeVertexRankMean != null)
             return LeafEdgeVertexRankMean;
         var data = new ArrayList<Double>();
-        for (var parser : Parsers)
+        for (var g : ParsedTreebank)
         {
-            var g = getDependenceGraph(parser);
             for (var v0 : g.vertexList())
             {
                 if (g.vertexInDegree(v0) == 0 && g.vertexOutDegree(v0) > 0)
@@ -3413,9 +3435,8 @@ public class VietnameseAnalyzer
         if (LeafRankMean != null)
             return LeafRankMean;
         var data = new ArrayList<Double>();
-        for (var parser : Parsers)
+        for (var g : ParsedTreebank)
         {
-            var g = getDependenceGraph(parser);
             var ranks = leafRanks(g);
             data.addAll(ranks);
         }
@@ -3595,6 +3616,7 @@ public class VietnameseAnalyzer
         var opts = new HashMap<String, Object>();
         opts.put("Step Number", 200);
         opts.put("Show Progress", false);
+        opts.put("Tolerance", 1e-12);
         var res = new ArrayList<WordVertex>();
         var maxIndex = Utilities.max(Utilities.map((WordVertex x) -> x.Location, g.vertexList()));
         while (wg.vertexCount() > 0)
@@ -3627,6 +3649,12 @@ public class VietnameseAnalyzer
             var chosenV = Utilities.getLastElement(collectedVs);
             res.add(chosenV);
             cutGraph(wg, chosenV);
+            // lần tính sau bắt đầu từ hạng hiện tại của các đỉnh còn lại, nhân thêm để bù phần 1/N đã thay đổi
+            var scale = (double) pR.size() / Math.max(wg.vertexCount(), 1);
+            var initialRanks = new HashMap<WordVertex, Double>();
+            for (var v : wg.vertexList())
+                initialRanks.put(v, pR.get(v) * scale);
+            opts.put("Initial Ranks", initialRanks);
         }
         if (requireAVerb)
             if (Utilities.anyTrue(g.vertexList(), (x) -> x.Type.equals("V") && x.Location < maxIndex))
@@ -3827,124 +3855,69 @@ public class VietnameseAnalyzer
         return res;
     }
 
+    /**
+     * các loại lỗi được đếm trong countErrors
+     */
+    final static String[] ErrorPropertyNames = new String[]{/*essentialInsideStr, essentialOutsideStr,*/
+            isSensibleEdgeStr,/* isTypePerfectAttachingStr,*/ isTypePerfectFollowingTypesErrorStr,
+            isTypePerfectPrecedingTypesErrorStr, isMissingNounStr, /*isClosestToRootEndingErrorsStr,*/
+            /*isAdjectiveToVerbErrorsStr,*/ isCloseSeparationErrorsStr, isTernaryLocalErrorsStr,
+            isPronounAdverbPropertyErrorsStr, isEssentialOutsideTypeErrorsStr};
+
     public static HashMap<String, Object> nonMeaningEdgeConnectedCountErrors(Graph<WordVertex> tree)
     {
         var res = new HashMap<String, Object>();
-        for (var name : new String[]{/*essentialInsideStr, essentialOutsideStr,*/
-                isSensibleEdgeStr,/* isTypePerfectAttachingStr,*/ isTypePerfectFollowingTypesErrorStr,
-                isTypePerfectPrecedingTypesErrorStr, isMissingNounStr, /*isClosestToRootEndingErrorsStr,*/
-                /*isAdjectiveToVerbErrorsStr,*/ isCloseSeparationErrorsStr, isTernaryLocalErrorsStr,
-                isPronounAdverbPropertyErrorsStr, isEssentialOutsideTypeErrorsStr})
-            Utilities.insertValue(res,
-                    new Object[]{name}, new HashSet<>()
-            );
-        for (var v : tree.vertexList())
+        var errorSets = new HashMap<String, HashSet<Object>>();
+        for (var name : ErrorPropertyNames)
         {
-            if (isEssentialOutsideTypeError(tree, v))
-                Utilities.insertValue(res,
-                        new Object[]{isEssentialOutsideTypeErrorsStr},
-                        new HashSet<>(),
-                        (x) ->
-                        {
-                            x.add(v);
-                            return x;
-                        }
-                );
-            if (isPronounAdverbPropertyError(tree, v))
-                Utilities.insertValue(res,
-                        new Object[]{isPronounAdverbPropertyErrorsStr},
-                        new HashSet<>(),
-                        (x) ->
-                        {
-                            x.add(v);
-                            return x;
-                        }
-                );
-            if (isTernaryLocalError(tree, v))
-                Utilities.insertValue(res,
-                        new Object[]{isTernaryLocalErrorsStr},
-                        new HashSet<>(),
-                        (x) ->
-                        {
-                            x.add(v);
-                            return x;
-                        }
-                );
-            if (isCloseSeparationError(tree, v))
-                Utilities.insertValue(res,
-                        new Object[]{isCloseSeparationErrorsStr},
-                        new HashSet<>(),
-                        (x) ->
-                        {
-                            x.add(v);
-                            return x;
-                        }
-                );
-            if (isTypePerfectPrecedingTypesError(tree, v))
-                Utilities.insertValue(res,
-                        new Object[]{isTypePerfectPrecedingTypesErrorStr},
-                        new HashSet<>(),
-                        (x) ->
-                        {
-                            x.add(v);
-                            return x;
-                        }
-                );
-            if (isTypePerfectFollowingTypesError(tree, v))
-                Utilities.insertValue(res,
-                        new Object[]{isTypePerfectFollowingTypesErrorStr},
-                        new HashSet<>(),
-                        (x) ->
-                        {
-                            x.add(v);
-                            return x;
-                        }
-                );
-            if (isMissingNoun(tree, v))
-                Utilities.insertValue(res,
-                        new Object[]{isMissingNounStr},
-                        new HashSet<>(),
-                        (x) ->
-                        {
-                            x.add(v);
-                            return x;
-                        }
-                );
-//            if (isWordOutside(tree, v) && isEssentialInsideWordQ(v))
-//                ((HashSet) res.get(essentialInsideStr)).add(v);
-//            if (isWordInside(tree, v) && isEssentialOutsideWordQ(v))
-//                ((HashSet) res.get(essentialOutsideStr)).add(v);
+            var set = new HashSet<Object>();
+            errorSets.put(name, set);
+            res.put(name, set);
         }
+        for (var v : tree.vertexList())
+            for (var name : getVertexErrorNames(tree, v))
+                errorSets.get(name).add(v);
         for (var ed : tree.edgeList())
         {
 //            if (!isTypePerfectAttaching(ed))
-//                Utilities.insertValue(res,
-//                        new Object[]{isTypePerfectAttachingStr},
-//                        new HashSet<>(),
-//                        (x) ->
-//                        {
-//                            x.add(ed);
-//                            return x;
-//                        }
-//                );
-
+//                errorSets.get(isTypePerfectAttachingStr).add(ed);
             if (!isSensibleEdge(ed))
-                Utilities.insertValue(res,
-                        new Object[]{isSensibleEdgeStr},
-                        new HashSet<>(),
-                        (x) ->
-                        {
-                            x.add(ed);
-                            return x;
-                        }
-                );
-            var v0 = ed.get(0);
-            var v1 = ed.get(1);
-            var dir = getEdgeDirection(ed);
+                errorSets.get(isSensibleEdgeStr).add(ed);
         }
         return res;
     }
 
+    /**
+     * các loại lỗi mà đỉnh v mắc phải trong tree, tree là một thành phần liên thông không có cạnh bổ sung nghĩa
+     *
+     * @param tree
+     * @param v
+     * @return
+     */
+    public static ArrayList<String> getVertexErrorNames(Graph<WordVertex> tree, WordVertex v)
+    {
+        var res = new ArrayList<String>();
+        if (isEssentialOutsideTypeError(tree, v))
+            res.add(isEssentialOutsideTypeErrorsStr);
+        if (isPronounAdverbPropertyError(tree, v))
+            res.add(isPronounAdverbPropertyErrorsStr);
+        if (isTernaryLocalError(tree, v))
+            res.add(isTernaryLocalErrorsStr);
+        if (isCloseSeparationError(tree, v))
+            res.add(isCloseSeparationErrorsStr);
+        if (isTypePerfectPrecedingTypesError(tree, v))
+            res.add(isTypePerfectPrecedingTypesErrorStr);
+        if (isTypePerfectFollowingTypesError(tree, v))
+            res.add(isTypePerfectFollowingTypesErrorStr);
+        if (isMissingNoun(tree, v))
+            res.add(isMissingNounStr);
+//        if (isWordOutside(tree, v) && isEssentialInsideWordQ(v))
+//            res.add(essentialInsideStr);
+//        if (isWordInside(tree, v) && isEssentialOutsideWordQ(v))
+//            res.add(essentialOutsideStr);
+        return res;
+    }
+
     public static void sentenceModifyTree(Graph<WordVertex> tree, HashSet<HashSet<WordVertex>> processedGroups)
     {
         var wm = getWordMeaningType(tree);
@@ -4642,8 +4615,11 @@ public class VietnameseAnalyzer
 
     public static Graph<WordVertex> decideParser(ArrayList<String> sentence, boolean showTree)
     {
-        var g = makeDependenceGraph(EdgePR, VertexPR, sentence);
-        return decideParser(g, showTree);
+        return withTreeScoreCache(() ->
+        {
+            var g = makeDependenceGraph(EdgePR, VertexPR, sentence);
+            return decideParser(g, showTree);
+        });
     }
 
 //    public static Graph<WordVertex> decideParser(Graph<WordVertex> g)
@@ -4957,24 +4933,33 @@ public class VietnameseAnalyzer
 //        if (sum0 == sum1)
 //            return 0;
 //        else return sum0 < sum1 ? -1 : 1;
+        var values0 = getErrorVector(errors0);
+        var values1 = getErrorVector(errors1);
+        var order = Utilities.lexicographicOrder(values0, values1, (x, y) -> x - y);
+        if (order != 0)
+            return order;
+        return 0;
+    }
+
+    /**
+     * số lỗi của từng loại, các loại được sắp theo ErrorPropertyImportance
+     *
+     * @param errors
+     * @return
+     */
+    public static ArrayList<Double> getErrorVector(HashMap<String, Object> errors)
+    {
+        var errorImportance = getErrorAppearanceStatics();
         var propertyNames = Utilities.makeArrayList(errorImportance.keySet());
         Utilities.sortBy(propertyNames, (x) -> errorImportance.get(x));
-        var values0 = new ArrayList<Double>();
-        var values1 = new ArrayList<Double>();
+        var res = new ArrayList<Double>();
         for (var erType : propertyNames)
         {
-            if (errors0.containsKey(erType))
-                values0.add(Double.valueOf(((HashSet) errors0.get(erType)).size()));
-            else values0.add(0d);
-
-            if (errors1.containsKey(erType))
-                values1.add(Double.valueOf(((HashSet) errors1.get(erType)).size()));
-            else values1.add(0d);
+            if (errors.containsKey(erType))
+                res.add(Double.valueOf(((HashSet) errors.get(erType)).size()));
+            else res.add(0d);
         }
-        var order = Utilities.lexicographicOrder(values0, values1, (x, y) -> x - y);
-        if (order != 0)
-            return order;
-        return 0;
+        return res;
     }
 
     public static int treeBalance(Graph<WordVertex> tree)
@@ -5039,29 +5024,53 @@ public class VietnameseAnalyzer
     public static double errorTreeCompare(Graph<WordVertex> tree0, Graph<WordVertex> tree1, boolean ignoreErrors)
     {
 //        errorTreeCompareCount++;
-        var isoVs0 = isolatedVertices(tree0);
-        var isoVs1 = isolatedVertices(tree1);
-        var auxTree0 = tree0.clone();
-        var auxTree1 = tree1.clone();
-        Utilities.map(
-                tree ->
-                {
-                    if (tree instanceof Parser)
-                        tree.deleteEdges(((Parser) tree).MeaningSupplementEdges);
-                }, new Graph[]{auxTree0, auxTree1}
-        );
+        var auxTree0 = toComparedTree(tree0);
+        var auxTree1 = toComparedTree(tree1);
+        if (auxTree0 == null || auxTree1 == null)
+            return graphErrorTreeCompare(tree0, tree1, ignoreErrors);
+        return comparedTreeCompare(auxTree0, auxTree1, ignoreErrors);
+    }
+
+    public static double errorTreeCompare(HeadTree tree0, HeadTree tree1, boolean ignoreErrors)
+    {
+        return comparedTreeCompare(tree0.withoutIsolated(), tree1.withoutIsolated(), ignoreErrors);
+    }
+
+    private static double comparedTreeCompare(HeadTree auxTree0, HeadTree auxTree1, boolean ignoreErrors)
+    {
+        var signature0 = getTreeSignature(auxTree0);
+        var signature1 = getTreeSignature(auxTree1);
+        var violations0 = getViolations(auxTree0, signature0);
+        var violations1 = getViolations(auxTree1, signature1);
+        if (violations0 != violations1)
+            return violations0 < violations1 ? -1 : 1;
+        if (!ignoreErrors)
+        {
+            var errors0 = getErrorVector(auxTree0, signature0);
+            var errors1 = getErrorVector(auxTree1, signature1);
+            var res = Utilities.lexicographicOrder(errors0, errors1, (x, y) -> x - y);
+            if (res != 0)
+                return res;
+        }
+        var weight0 = getTreeWeight(auxTree0, signature0);
+        var weight1 = getTreeWeight(auxTree1, signature1);
+        return weight0 < weight1 ? 1 : (weight0 > weight1 ? -1 : 0);
+    }
 
-        auxTree0.deleteVertices(isoVs0);
-        auxTree1.deleteVertices(isoVs1);
+    /**
+     * so sánh trên Graph khi một trong hai cây không phải là rừng (có đỉnh có hơn một cạnh đi ra)
+     */
+    private static double graphErrorTreeCompare(Graph<WordVertex> tree0, Graph<WordVertex> tree1, boolean ignoreErrors)
+    {
+        var auxTree0 = toComparedGraph(tree0);
+        var auxTree1 = toComparedGraph(tree1);
         var violations0 = countViolations(auxTree0);
         var violations1 = countViolations(auxTree1);
         if (violations0 != violations1)
             return violations0 < violations1 ? -1 : 1;
         if (!ignoreErrors)
         {
-            var errors0 = countErrors(auxTree0);
-            var errors1 = countErrors(auxTree1);
-            var res = errorCompare(errors0, errors1);
+            var res = errorCompare(countErrors(auxTree0), countErrors(auxTree1));
             if (res != 0)
                 return res;
         }
@@ -5070,6 +5079,118 @@ public class VietnameseAnalyzer
         return weight0 < weight1 ? 1 : (weight0 > weight1 ? -1 : 0);
     }
 
+    /**
+     * điểm của các cây trong câu mà luồng hiện tại đang phân tích, null khi không phân tích câu nào
+     */
+    private static final ThreadLocal<TreeScoreCache> TreeScores = new ThreadLocal<>();
+
+    /**
+     * chạy func với một bộ nhớ đệm điểm cây riêng cho câu, bộ nhớ đệm bị bỏ khi func chạy xong;
+     * nếu luồng đang phân tích một câu thì dùng chung bộ nhớ đệm của câu đó
+     */
+    private static <T> T withTreeScoreCache(NullFunction<T> func)
+    {
+        if (TreeScores.get() != null)
+            return func.apply();
+        TreeScores.set(new TreeScoreCache());
+        try
+        {
+            return func.apply();
+        } finally
+        {
+            TreeScores.remove();
+        }
+    }
+
+    /**
+     * @param auxTree cây đã qua toComparedTree
+     * @return dạng chuẩn của auxTree hoặc null nếu không có bộ nhớ đệm
+     */
+    private static TreeSignature getTreeSignature(HeadTree auxTree)
+    {
+        var cache = TreeScores.get();
+        return cache == null ? null : cache.getSignature(auxTree);
+    }
+
+    private static int getViolations(HeadTree auxTree, TreeSignature signature)
+    {
+        if (signature == null)
+            return countViolations(auxTree);
+        return TreeScores.get().getViolations(signature, () -> countViolations(auxTree));
+    }
+
+    private static ArrayList<Double> getErrorVector(HeadTree auxTree, TreeSignature signature)
+    {
+        if (signature == null)
+            return getErrorVector(countErrors(auxTree.toGraph()));
+        return TreeScores.get().getErrors(signature, () -> getErrorVector(countErrors(auxTree.toGraph())));
+    }
+
+    private static double getTreeWeight(HeadTree auxTree, TreeSignature signature)
+    {
+        if (signature == null)
+            return getTreeWeight(auxTree);
+        return TreeScores.get().getWeight(signature, () -> getTreeWeight(auxTree));
+    }
+
+    /**
+     * cây được so sánh trong errorTreeCompare: bỏ các cạnh bổ sung nghĩa của Parser và các đỉnh cô lập
+     *
+     * @return null nếu tree không phải là rừng
+     */
+    private static HeadTree toComparedTree(Graph<WordVertex> tree)
+    {
+        var isoVs = isolatedVertices(tree);
+        var vs = Utilities.complement(tree.vertexList(), isoVs);
+        var eds = tree.edgeList();
+        if (tree instanceof Parser)
+            eds = Utilities.complement(eds, ((Parser) tree).MeaningSupplementEdges);
+        return HeadTree.of(vs, eds);
+    }
+
+    /**
+     * bản sao của tree giống toComparedTree nhưng vẫn là Graph
+     */
+    private static Graph<WordVertex> toComparedGraph(Graph<WordVertex> tree)
+    {
+        var isoVs = isolatedVertices(tree);
+        var res = tree.clone();
+        if (res instanceof Parser)
+            res.deleteEdges(((Parser) res).MeaningSupplementEdges);
+        res.deleteVertices(isoVs);
+        return res;
+    }
+
+    /**
+     * đánh giá tree một lần, so sánh hai điểm cho cùng kết quả với errorTreeCompare
+     *
+     * @param tree
+     * @param ignoreErrors
+     * @return
+     */
+    public static TreeScore getTreeScore(Graph<WordVertex> tree, boolean ignoreErrors)
+    {
+        var headTree = toComparedTree(tree);
+        if (headTree != null)
+            return getComparedTreeScore(headTree, ignoreErrors);
+        var auxTree = toComparedGraph(tree);
+        var errors = ignoreErrors ? null : getErrorVector(countErrors(auxTree));
+        return new TreeScore(countViolations(auxTree), errors, getTreeWeight(auxTree));
+    }
+
+    public static TreeScore getTreeScore(HeadTree tree, boolean ignoreErrors)
+    {
+        return getComparedTreeScore(tree.withoutIsolated(), ignoreErrors);
+    }
+
+    private static TreeScore getComparedTreeScore(HeadTree auxTree, boolean ignoreErrors)
+    {
+        var signature = getTreeSignature(auxTree);
+        var violations = getViolations(auxTree, signature);
+        var errors = ignoreErrors ? null : getErrorVector(auxTree, signature);
+        return new TreeScore(violations, errors, getTreeWeight(auxTree, signature));
+    }
+
     private static WordVertex getRoot(Graph<WordVertex> tree)
     {
         return Utilities.firstCase(tree.vertexList(), (x) -> tree.vertexOutDegree(x) == 0);
@@ -5131,6 +5252,7 @@ public class VietnameseAnalyzer
         var opts = new HashMap<String, Object>();
         opts.put("Step Number", 100);
         opts.put("Show Progress", false);
+        opts.put("Tolerance", 1e-12);
         var pR = Graph.pageRank(g, opts);
         Utilities.sortBy(ar, (x) -> pR.get(x));
 //        System.out.println(
@@ -5406,6 +5528,9 @@ public class VietnameseAnalyzer
 
     public static int countViolations(Graph<WordVertex> tree)
     {
+        var headTree = HeadTree.of(tree.vertexList(), tree.edgeList());
+        if (headTree != null)
+            return countViolations(headTree);
         var composes = tree.weaklyConnectedComponents();
         if (composes.size() <= 1)
         {
@@ -5428,6 +5553,155 @@ public class VietnameseAnalyzer
         }
     }
 
+    /**
+     * cùng kết quả với countViolations trên Graph nhưng chỉ dùng khoảng vị trí [min, max] của các cây con:
+     * countViolations(tree, loc) đếm các đỉnh u mà cây con của u không chứa loc, min < loc < max và không có
+     * đỉnh con nào của u có khoảng vị trí chứa loc; đảo lại, mỗi u đóng góp số đỉnh cùng thành phần có vị trí
+     * nằm trong (min, max) của u nhưng ngoài các khoảng (min, max) của các đỉnh con và không thuộc cây con của u,
+     * các vị trí của cây con của u nằm ngoài các khoảng đó chỉ có thể là vị trí của u và min, max của các đỉnh con
+     *
+     * @param tree
+     * @return
+     */
+    public static int countViolations(HeadTree tree)
+    {
+        var n = tree.size();
+        var children = tree.getChildren();
+        var order = new int[n];
+        var componentIds = new int[n];
+        var componentLocs = new ArrayList<int[]>();
+        var stack = new int[n];
+        var size = 0;
+        for (var root = 0; root <= n - 1; root++)
+        {
+            if (tree.getHead(root) != -1)
+                continue;
+            var start = size;
+            var top = 0;
+            stack[top++] = root;
+            while (top > 0)
+            {
+                var v = stack[--top];
+                order[size++] = v;
+                componentIds[v] = componentLocs.size();
+                for (var c : children[v])
+                    stack[top++] = c;
+            }
+            var locs = new int[size - start];
+            for (var i = start; i <= size - 1; i++)
+                locs[i - start] = tree.getVertex(order[i]).Location;
+            Arrays.sort(locs);
+            componentLocs.add(locs);
+        }
+        var mins = new int[n];
+        var maxs = new int[n];
+        var res = 0;
+        // các đỉnh con được xét trước đỉnh cha
+        for (var k = size - 1; k >= 0; k--)
+        {
+            var u = order[k];
+            var loc = tree.getVertex(u).Location;
+            mins[u] = loc;
+            maxs[u] = loc;
+            var childCount = children[u].length;
+            if (childCount == 0)
+                continue;
+            var keys = new long[childCount];
+            var points = new int[2 * childCount + 1];
+            for (var i = 0; i <= childCount - 1; i++)
+            {
+                var c = children[u][i];
+                mins[u] = Math.min(mins[u], mins[c]);
+                maxs[u] = Math.max(maxs[u], maxs[c]);
+                keys[i] = ((long) mins[c] << 32) | (maxs[c] - (long) Integer.MIN_VALUE);
+                points[2 * i] = mins[c];
+                points[2 * i + 1] = maxs[c];
+            }
+            points[2 * childCount] = loc;
+            Arrays.sort(keys);
+            // hợp các khoảng mở (min, max) của các đỉnh con
+            var starts = new int[childCount];
+            var ends = new int[childCount];
+            var count = 0;
+            for (var key : keys)
+            {
+                var start = (int) (key >> 32);
+                var end = (int) ((key & 0xffffffffL) + Integer.MIN_VALUE);
+                if (start >= end)
+                    continue;
+                if (count > 0 && start < ends[count - 1])
+                    ends[count - 1] = Math.max(ends[count - 1], end);
+                else
+                {
+                    starts[count] = start;
+                    ends[count] = end;
+                    count++;
+                }
+            }
+            var locs = componentLocs.get(componentIds[u]);
+            var violations = countLocations(locs, mins[u], maxs[u]);
+            for (var i = 0; i <= count - 1; i++)
+                violations -= countLocations(locs, starts[i], ends[i]);
+            Arrays.sort(points);
+            for (var i = 0; i <= points.length - 1; i++)
+            {
+                var point = points[i];
+                if ((i > 0 && points[i - 1] == point) || point <= mins[u] || point >= maxs[u])
+                    continue;
+                var j = upperBound(starts, count, point - 1) - 1;
+                if (j >= 0 && point < ends[j])
+                    continue;
+                violations -= countLocations(locs, point - 1, point + 1);
+            }
+            res += violations;
+        }
+        return res;
+    }
+
+    /**
+     * @return số phần tử x của mảng đã sắp locs thỏa low < x < high
+     */
+    private static int countLocations(int[] locs, int low, int high)
+    {
+        if (low >= high)
+            return 0;
+        return Math.max(0, lowerBound(locs, locs.length, high) - upperBound(locs, locs.length, low));
+    }
+
+    /**
+     * @return vị trí đầu tiên trong values[0..length) không nhỏ hơn value
+     */
+    private static int lowerBound(int[] values, int length, int value)
+    {
+        var low = 0;
+        var high = length;
+        while (low < high)
+        {
+            var middle = (low + high) >>> 1;
+            if (values[middle] < value)
+                low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return vị trí đầu tiên trong values[0..length) lớn hơn value
+     */
+    private static int upperBound(int[] values, int length, int value)
+    {
+        var low = 0;
+        var high = length;
+        while (low < high)
+        {
+            var middle = (low + high) >>> 1;
+            if (values[middle] <= value)
+                low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
     private static int countViolations(Graph<WordVertex> tree, int loc)
     {
         var root = Utilities.firstCase(tree.vertexList(),
@@ -5723,9 +5997,8 @@ public class VietnameseAnalyzer
         if (WordInsideOutsides != null)
             return WordInsideOutsides;
         var res = new HashMap<ArrayList<String>, HashMap<String, Integer>>();
-        for (var parser : Parsers)
+        for (var tree : ParsedTreebank)
         {
-            var tree = getDependenceGraph(parser);
             for (var v : tree.vertexList())
             {
                 var word = v.Word;
@@ -5744,41 +6017,51 @@ public class VietnameseAnalyzer
 
     public static HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>> getTypeTernaryDirections()
     {
-        var res = new HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>>();
+        var res = new AtomicReference<HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>>>();
+        TreebankStatistics.run(ParsedTreebank, typeTernaryDirectionsAccumulator(x -> res.set(x)));
+        return res.get();
+    }
+
+    private static TreebankAccumulator<HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>>> typeTernaryDirectionsAccumulator(
+            UnaryAction<HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>>> finisher)
+    {
         UnaryFunction<String, String> simplifyN = (x) ->
         {
             if (x.startsWith("N"))
                 return "N";
             else return x;
         };
-        for (var parser : Parsers)
-        {
-            var g = getDependenceGraph(parser);
-            for (var v : g.vertexList())
-            {
-                var inVs = Utilities.makeArrayList(g.inGoingVertices(v));
-                Utilities.quickSort(inVs, (x, y) -> x.Location - y.Location);
-                for (var i = 0; i <= inVs.size() - 2; i++)
+        return new TreebankAccumulator<>(
+                () -> new HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>>(),
+                (res, g) ->
                 {
-                    var iEle = inVs.get(i);
-                    var nextIEle = inVs.get(i + 1);
-                    var types = new ArrayList<String>();
-                    types.add(simplifyN.apply(v.Type));
-                    types.add(simplifyN.apply(iEle.Type));
-                    types.add(simplifyN.apply(nextIEle.Type));
-                    var locs = new ArrayList<Integer>();
-                    locs.add(v.Location);
-                    locs.add(iEle.Location);
-                    locs.add(nextIEle.Location);
-                    locs = simplifyIndices(locs);
-                    if (!Utilities.keySequenceExistsQ(res, types, locs))
-                        Utilities.insertValue(res, new Object[]{types, locs}, 0);
-                    var value = Utilities.getValue(res, types, locs);
-                    Utilities.insertValue(res, new Object[]{types, locs}, ((int) value) + 1);
-                }
-            }
-        }
-        return res;
+                    for (var v : g.vertexList())
+                    {
+                        var inVs = Utilities.makeArrayList(g.inGoingVertices(v));
+                        Utilities.quickSort(inVs, (x, y) -> x.Location - y.Location);
+                        for (var i = 0; i <= inVs.size() - 2; i++)
+                        {
+                            var iEle = inVs.get(i);
+                            var nextIEle = inVs.get(i + 1);
+                            var types = new ArrayList<String>();
+                            types.add(simplifyN.apply(v.Type));
+                            types.add(simplifyN.apply(iEle.Type));
+                            types.add(simplifyN.apply(nextIEle.Type));
+                            var locs = new ArrayList<Integer>();
+                            locs.add(v.Location);
+                            locs.add(iEle.Location);
+                            locs.add(nextIEle.Location);
+                            locs = simplifyIndices(locs);
+                            if (!Utilities.keySequenceExistsQ(res, types, locs))
+                                Utilities.insertValue(res, new Object[]{types, locs}, 0);
+                            var value = Utilities.getValue(res, types, locs);
+                            Utilities.insertValue(res, new Object[]{types, locs}, ((int) value) + 1);
+                        }
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                finisher
+        );
     }
 
     public static Double typePairDirectionLeastSquares = null;
@@ -5842,7 +6125,14 @@ public class VietnameseAnalyzer
 
     private static HashMap<ArrayList<String>, HashMap<String, Integer>> getTypePairDirections()
     {
-        var res = new HashMap<ArrayList<String>, HashMap<String, Integer>>();
+        var res = new AtomicReference<HashMap<ArrayList<String>, HashMap<String, Integer>>>();
+        TreebankStatistics.run(ParsedTreebank, typePairDirectionsAccumulator(x -> res.set(x)));
+        return res.get();
+    }
+
+    private static TreebankAccumulator<HashMap<ArrayList<String>, HashMap<String, Integer>>> typePairDirectionsAccumulator(
+            UnaryAction<HashMap<ArrayList<String>, HashMap<String, Integer>>> finisher)
+    {
         final var next = "next";
         final var before = "before";
         UnaryFunction<String, String> simplifyType = (x) ->
@@ -5851,35 +6141,38 @@ public class VietnameseAnalyzer
                 return "N";
             else return x;
         };
-        for (var parser : Parsers)
-        {
-            var auxg = getDependenceGraph(parser);
-            for (var ed : auxg.edgeList())
-            {
-                var v0 = ed.get(0);
-                var v1 = ed.get(1);
-                var direction = v0.Location < v1.Location ? next : before;
-                var typePair = new CustomArrayList<String>(new String[]{simplifyType.apply(v0.Type), simplifyType.apply(v1.Type)});
-                if (!res.containsKey(typePair))
+        return new TreebankAccumulator<>(
+                () -> new HashMap<ArrayList<String>, HashMap<String, Integer>>(),
+                (res, auxg) ->
                 {
-                    res.put(typePair, new HashMap<String, Integer>());
-                    res.get(typePair).put(before, 0);
-                    res.get(typePair).put(next, 0);
-                }
-                switch (direction)
-                {
-                    case next:
-                        var value = res.get(typePair).get(next);
-                        res.get(typePair).put(next, value + 1);
-                        break;
-                    case before:
-                        value = res.get(typePair).get(before);
-                        res.get(typePair).put(before, value + 1);
-                        break;
-                }
-            }
-        }
-        return res;
+                    for (var ed : auxg.edgeList())
+                    {
+                        var v0 = ed.get(0);
+                        var v1 = ed.get(1);
+                        var direction = v0.Location < v1.Location ? next : before;
+                        var typePair = new CustomArrayList<String>(new String[]{simplifyType.apply(v0.Type), simplifyType.apply(v1.Type)});
+                        if (!res.containsKey(typePair))
+                        {
+                            res.put(typePair, new HashMap<String, Integer>());
+                            res.get(typePair).put(before, 0);
+                            res.get(typePair).put(next, 0);
+                        }
+                        switch (direction)
+                        {
+                            case next:
+                                var value = res.get(typePair).get(next);
+                                res.get(typePair).put(next, value + 1);
+                                break;
+                            case before:
+                                value = res.get(typePair).get(before);
+                                res.get(typePair).put(before, value + 1);
+                                break;
+                        }
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                finisher
+        );
     }
 
     public static double waitingWordThresold;
@@ -5988,9 +6281,8 @@ public class VietnameseAnalyzer
     {
         waitingWordLeastSquares = getWaitingWordLeastSquares(PR);
         var treeHeights = new ArrayList<Integer>();
-        for (var parser : Parsers)
+        for (var tree : ParsedTreebank)
         {
-            var tree = getDependenceGraph(parser);
             if (tree.vertexCount() == 0)
                 continue;
             treeHeights.add(getTreeHeight(tree));
@@ -6026,9 +6318,8 @@ public class VietnameseAnalyzer
             res.add(v.Type);
             return res;
         };
-        for (var parser : VietnameseAnalyzer.Parsers)
+        for (var auxg : ParsedTreebank)
         {
-            var auxg = getDependenceGraph(parser);
             var eds = auxg.edgeList();
             for (var ed : eds)
             {
@@ -6052,45 +6343,15 @@ public class VietnameseAnalyzer
                 }
             }
         }
-        var lb0 = new LoopbackLink();
-        var lb1 = new LoopbackLink();
-        var size = mt.size();
-        lb0.putFunction("List", size);
-        lb1.putFunction("List", size);
-        for (var i = 0; i <= size - 1; i++)
-        {
-            var tuple = mt.get(i);
-            lb0.putFunction("List", tuple.size());
-            for (var value : tuple)
-                lb0.put(value);
-            lb1.put(vt.get(i));
-        }
-        var mtExpr = lb0.getExpr();
-        var vtExpr = lb1.getExpr();
-        var lb2 = new LoopbackLink();
-        lb2.putFunction("LeastSquares", 2);
-        lb2.put(mtExpr);
-        lb2.put(vtExpr);
-        var exprRes = Utilities.evaluateExpr(lb2.getExpr());
-        var res = new ArrayList<Double>();
-        try
-        {
-            for (var i = 1; i <= exprRes.length(); i++)
-                res.add(exprRes.part(i).asDouble());
-            return res;
-        } catch (Exception e)
-        {
-            throw new RuntimeException(e.getMessage());
-        }
+        return getLeastSquares(mt, vt);
     }
 
     public static double getWaitingWordLeastSquares(HashMap<Object, Double> PR)
     {
         var mt = new ArrayList<Double>();
         var vt = new ArrayList<Double>();
-        for (var parser : VietnameseAnalyzer.Parsers)
+        for (var auxg : ParsedTreebank)
         {
-            var auxg = getDependenceGraph(parser);
             for (var v : auxg.vertexList())
             {
                 var word = v.Word;
@@ -6112,29 +6373,8 @@ public class VietnameseAnalyzer
                 }
             }
         }
-        var lb0 = new LoopbackLink();
-        var lb1 = new LoopbackLink();
-        lb0.putFunction("List", vt.size());
-        lb1.putFunction("List", vt.size());
-        for (var i = 0; i <= vt.size() - 1; i++)
-        {
-            lb0.putFunction("List", 1);
-            lb0.put(mt.get(i));
-            lb1.put(vt.get(i));
-        }
-        var mtExpr = lb0.getExpr();
-        var vtExpr = lb1.getExpr();
-        var lb2 = new LoopbackLink();
-        lb2.putFunction("LeastSquares", 2);
-        lb2.put(mtExpr);
-        lb2.put(vtExpr);
-        try
-        {
-            return Utilities.evaluateExpr(lb2.getExpr()).part(1).asDouble();
-        } catch (Exception e)
-        {
-            throw new RuntimeException(e.getMessage());
-        }
+        var column = Utilities.map((Double x) -> new CustomArrayList<>(new Double[]{x}), mt);
+        return getLeastSquares(column, vt).get(0);
     }
 
     public static void initializeToSecondLevelLeastSquares(HashMap<EdgeVertex, Double> EdPR,
@@ -6199,6 +6439,32 @@ public class VietnameseAnalyzer
         return MathUtilities.leastSquares((ArrayList<ArrayList<Number>>) (Object) data);
     }
 
+    /**
+     * giống LeastSquares[mt, vector] của Mathematica nhưng được tính ngay trong Java trên mảng double
+     *
+     * @param mt     mỗi phần tử là một hàng của ma trận
+     * @param vector
+     * @return
+     */
+    public static ArrayList<Double> getLeastSquares(ArrayList<? extends ArrayList<Double>> mt, ArrayList<Double> vector)
+    {
+        var a = new double[mt.size()][];
+        var b = new double[vector.size()];
+        for (var i = 0; i <= mt.size() - 1; i++)
+        {
+            var row = mt.get(i);
+            a[i] = new double[row.size()];
+            for (var j = 0; j <= row.size() - 1; j++)
+                a[i][j] = row.get(j);
+            b[i] = vector.get(i);
+        }
+        var sol = MathUtilities.leastSquares(a, b);
+        var res = new ArrayList<Double>();
+        for (var value : sol)
+            res.add(value);
+        return res;
+    }
+
     public static double getLeastSquaresVariance(ArrayList<ArrayList<Double>> data, ArrayList<Double> leastSquares)
     {
         var res = 0d;
@@ -6227,11 +6493,10 @@ public class VietnameseAnalyzer
                                                                    int length, int width, int pos)
     {
         var res = new ArrayList<ArrayList<Double>>();
-        var size = Parsers.size();
+        var size = ParsedTreebank.size();
         for (var i = 0; i <= size - 1; i++)
         {
-            var parser = Parsers.get(i);
-            var g = preprocess.apply(getDependenceGraph(parser));
+            var g = preprocess.apply(ParsedTreebank.getTree(i));
             var locals = getLocals(g, length, width);
             for (var local : locals)
             {
@@ -6350,17 +6615,14 @@ public class VietnameseAnalyzer
         {
             return new CustomArrayList<String>(new String[]{x.Word, x.Type});
         };
-        for (var i = 0; i <= Parsers.size() - 1; i++/*var parser : Parsers*/)
+        for (var i = 0; i <= ParsedTreebank.size() - 1; i++/*var parser : Parsers*/)
         {
-            var parser = Parsers.get(i);
-            var g = getDependenceGraph(parser);
+            var g = ParsedTreebank.getTree(i);
             for (var v : g.vertexList())
             {
                 if (toRootDistance(g, v) >= 2)
                 {
                     var path = pathFunc.apply(g, v);
-                    if (i == 0)
-                        Utilities.executeMathematicaCode("Echo[%0@toString[]]", path);
                     var x = path.get(0);
                     var pairX = func.apply(x);
                     var y = path.get(1);
@@ -6378,43 +6640,17 @@ public class VietnameseAnalyzer
                     data.add(new CustomArrayList<Double>(new Double[]{
                             PR.get(pairX), EdPR.get(xyEd), PR.get(pairY), EdPR.get(yzEd), PR.get(pairZ)
                     }));
-                    if (i == 0)
-                        Utilities.executeMathematicaCode("Echo[%0@toString[]]", path);
                 }
             }
         }
-        Utilities.executeMathematicaCode("MyData=%0", data);
-        var loopbackLink0 = new LoopbackLink();
-        loopbackLink0.putFunction("List", data.size());
-        var loopbackLink1 = new LoopbackLink();
-        loopbackLink1.putFunction("List", data.size());
+        var mt = new ArrayList<ArrayList<Double>>();
+        var vector = new ArrayList<Double>();
         for (var tuple : data)
         {
-            loopbackLink0.putFunction("List", 4);
-            for (var i = 0; i <= 3; i++)
-                loopbackLink0.put(tuple.get(i));
-            loopbackLink1.put(tuple.get(4));
-        }
-        var mt = loopbackLink0.getExpr();
-        var vector = loopbackLink1.getExpr();
-        var loopbackLink = new LoopbackLink();
-        loopbackLink.putFunction("LeastSquares", 2);
-        loopbackLink.put(mt);
-        loopbackLink.put(vector);
-        var resExpr = loopbackLink.getExpr();
-        var res = Utilities.evaluateExpr(resExpr);
-        try
-        {
-            return new CustomArrayList<Double>(new Double[]{
-                    res.part(new int[]{1}).asDouble(),
-                    res.part(new int[]{2}).asDouble(),
-                    res.part(new int[]{3}).asDouble(),
-                    res.part(new int[]{4}).asDouble()
-            });
-        } catch (Exception e)
-        {
-            throw new RuntimeException(e.getMessage());
+            mt.add(Utilities.part(tuple, 0, 3));
+            vector.add(tuple.get(4));
         }
+        return getLeastSquares(mt, vector);
     }
 
     public static ArrayList<Double> attachedToRoots(HashMap<EdgeVertex, Double> EdPR, HashMap<Object, Double> PR, String direction)
@@ -6441,9 +6677,8 @@ public class VietnameseAnalyzer
                 }
             }, objs);
         };
-        for (var parser : Parsers)
+        for (var g : ParsedTreebank)
         {
-            var g = getDependenceGraph(parser);
             var roots = Utilities.select(g.vertexList(), (x) -> (g.vertexOutDegree(x) == 0));
             for (var root : roots)
             {
@@ -6475,39 +6710,21 @@ public class VietnameseAnalyzer
                 }
             }
         }
-        Utilities.executeMathematicaCode("MyData=%0", data);
-        var mt = new ArrayList<ArrayList<Double>>();
-        var vector = new ArrayList<Double>();
-        for (var tuple : data)
-        {
-            mt.add(Utilities.part(tuple, 0, 3));
-            vector.add(tuple.get(4));
-        }
-        var mtExpr = Utilities.convertToExpr(mt);
-        var vectorExpr = Utilities.convertToExpr(vector);
-        var loopbackLink = new LoopbackLink();
-        loopbackLink.putFunction("LeastSquares", 2);
-        loopbackLink.put(mtExpr);
-        loopbackLink.put(vectorExpr);
-        var resExpr = Utilities.evaluateExpr(loopbackLink.getExpr());
-        var res = new ArrayList<Double>();
-        try
-        {
-            for (var i = 1; i <= resExpr.length(); i++)
-                res.add(resExpr.part(new int[]{i}).asDouble());
-            return res;
-        } catch (Exception e)
+        var mt = new ArrayList<ArrayList<Double>>();
+        var vector = new ArrayList<Double>();
+        for (var tuple : data)
         {
-            throw new RuntimeException(e.getMessage());
+            mt.add(Utilities.part(tuple, 0, 3));
+            vector.add(tuple.get(4));
         }
+        return getLeastSquares(mt, vector);
     }
 
     public static ArrayList<Double> attachedToRoots(HashMap<EdgeVertex, Double> EdPR, HashMap<Object, Double> PR)
     {
         var data = new ArrayList<ArrayList<Double>>();
-        for (var parser : Parsers)
+        for (var g : ParsedTreebank)
         {
-            var g = getDependenceGraph(parser);
             for (var v : g.vertexList())
             {
                 if (toRootDistance(g, v) == 1)
@@ -6530,38 +6747,14 @@ public class VietnameseAnalyzer
             }
         }
 //        Utilities.executeMathematicaCode("MyData=%0",data);
-        var loopbackLink0 = new LoopbackLink();
-        loopbackLink0.putFunction("List", data.size());
-        var loopbackLink1 = new LoopbackLink();
-        loopbackLink1.putFunction("List", data.size());
+        var mt = new ArrayList<ArrayList<Double>>();
+        var vector = new ArrayList<Double>();
         for (var tuple : data)
         {
-            var a = tuple.get(0);
-            var b = tuple.get(1);
-            var c = tuple.get(2);
-            loopbackLink0.putFunction("List", 2);
-            loopbackLink0.put(a);
-            loopbackLink0.put(b);
-            loopbackLink1.put(c);
-        }
-        var mt = loopbackLink0.getExpr();
-        var vector = loopbackLink1.getExpr();
-        var loopbackLink = new LoopbackLink();
-        loopbackLink.putFunction("LeastSquares", 2);
-        loopbackLink.put(mt);
-        loopbackLink.put(vector);
-        var exprRes = loopbackLink.getExpr();
-        exprRes = Utilities.evaluateExpr(exprRes);
-        var res = new ArrayList<Double>();
-        try
-        {
-            res.add(exprRes.part(new int[]{1}).asDouble());
-            res.add(exprRes.part(new int[]{2}).asDouble());
-            return res;
-        } catch (Exception e)
-        {
-            throw new RuntimeException(e.getMessage());
+            mt.add(Utilities.part(tuple, 0, 1));
+            vector.add(tuple.get(2));
         }
+        return getLeastSquares(mt, vector);
     }
 
     public static int toRootDistance(Graph<WordVertex> g, WordVertex v)
@@ -6601,50 +6794,21 @@ public class VietnameseAnalyzer
             mt.add(pair);
             vt.add(EdPR.get(edV));
         }
-        var loopbackLink = new LoopbackLink();
-        loopbackLink.putFunction("List", mt.size());
-        for (var pair : mt)
-        {
-            loopbackLink.putFunction("List", 2);
-            loopbackLink.put(pair.get(0));
-            loopbackLink.put(pair.get(1));
-        }
-        var mtExpr = loopbackLink.getExpr();
-        loopbackLink.clear();
-        loopbackLink.putFunction("List", vt.size());
-        for (var value : vt)
-            loopbackLink.put(value);
-        var vectorExpr = loopbackLink.getExpr();
-        loopbackLink.clear();
-        loopbackLink.putFunction("LeastSquares", 2);
-        loopbackLink.put(mtExpr);
-        loopbackLink.put(vectorExpr);
-        var lSExpr = loopbackLink.getExpr();
-        try
+        var mainRes = getLeastSquares(mt, vt);
+        if (variance != null)
         {
-            var res = Utilities.evaluateExpr(lSExpr);
-            var mainRes = new CustomArrayList<Double>(new Double[]{
-                    res.part(new int[]{1}).asDouble(),
-                    res.part(new int[]{2}).asDouble()
-            });
-            if (variance != null)
+            var data = new ArrayList<ArrayList<Double>>();
+            for (var i = 0; i <= mt.size() - 1; i++)
             {
-                var data = new ArrayList<ArrayList<Double>>();
-                for (var i = 0; i <= mt.size() - 1; i++)
-                {
-                    var tuple = new CustomArrayList<Double>(new Double[]{mt.get(i).get(0), mt.get(i).get(1), vt.get(i)});
-                    data.add(tuple);
-                }
-                variance.set(getLeastSquaresVariance(data, mainRes));
+                var tuple = new CustomArrayList<Double>(new Double[]{mt.get(i).get(0), mt.get(i).get(1), vt.get(i)});
+                data.add(tuple);
             }
-            if (direction.equals("next"))
-                VertexToEdgeRankLeastSquaresNext = mainRes;
-            else VertexToEdgeRankLeastSquaresBefore = mainRes;
-            return mainRes;
-        } catch (Exception e)
-        {
-            throw new RuntimeException(e.getMessage());
+            variance.set(getLeastSquaresVariance(data, mainRes));
         }
+        if (direction.equals("next"))
+            VertexToEdgeRankLeastSquaresNext = mainRes;
+        else VertexToEdgeRankLeastSquaresBefore = mainRes;
+        return mainRes;
     }
 
     public static ArrayList<Integer> rankDifference(HashMap<Object, Number> hm0, HashMap<Object, Number> hm1, Collection out)
@@ -6801,7 +6965,10 @@ public class VietnameseAnalyzer
     public static double beforeVertexToEdgeRankLeastSquaresVariance;
 
     public static boolean isInitialized = false;
-    public static ArrayList<ArrayList<ArrayList<String>>> Parsers = null;
+    /**
+     * kho dữ liệu huấn luyện, các dòng chuỗi đọc từ vtb.txt không được giữ lại sau khi tạo Treebank
+     */
+    public static Treebank ParsedTreebank = null;
     /**
      * cấu trúc là word->type0->type1->direction->frequency
      */
@@ -6958,6 +7125,36 @@ public class VietnameseAnalyzer
         return res;
     }
 
+    /**
+     * giống closestWord với targets là mọi từ của bảng hạng, tìm bằng chỉ mục index = new RankIndex(PR)
+     */
+    public static ArrayList<ArrayList<String>> closestWord(RankIndex index, ArrayList<String> wordInfo,
+                                                           UnaryFunction<ArrayList<String>, Boolean> checkf, AtomicReference<Double> storedDiff)
+    {
+        var rank = index.getRank(wordInfo);
+        if (rank == null)
+            throw new RuntimeException("Invalid input");
+        var res = index.closest(wordInfo.get(1), rank, checkf, storedDiff);
+        if (res.contains(wordInfo))
+        {
+            res.clear();
+            res.add(wordInfo);
+        }
+        return res;
+    }
+
+    /**
+     * k từ cùng lớp kiểu với wordInfo có hạng gần hạng của wordInfo nhất, tìm bằng chỉ mục index = new RankIndex(PR)
+     */
+    public static ArrayList<ArrayList<String>> closestWords(RankIndex index, ArrayList<String> wordInfo,
+                                                            int k, UnaryFunction<ArrayList<String>, Boolean> checkf)
+    {
+        var rank = index.getRank(wordInfo);
+        if (rank == null)
+            throw new RuntimeException("Invalid input");
+        return index.nearest(wordInfo.get(1), rank, k, checkf);
+    }
+
     public static ArrayList<ArrayList<String>> closestWord(HashMap<ArrayList<String>, Double> PR, ArrayList<String> wordInfo, Collection<ArrayList<String>> targets,
                                                            UnaryFunction<ArrayList<String>, Boolean> checkf, AtomicReference<Double> storedDiff)
     {
@@ -7069,9 +7266,8 @@ public class VietnameseAnalyzer
     public static Graph<ArrayList<String>> getGraphUnion()
     {
         var res = new Graph<ArrayList<String>>();
-        for (var parser : Parsers)
+        for (var g : ParsedTreebank)
         {
-            var g = getDependenceGraph(parser);
             var subRes = getGraphUnion(g);
             res.addVertices(subRes.vertexList());
             for (var ed : subRes.edgeList())
@@ -7180,9 +7376,8 @@ public class VietnameseAnalyzer
     public static Graph<EdgeVertex> getEdgeConnectionGraph()
     {
         var res = new Graph<EdgeVertex>();
-        for (var parser : Parsers)
+        for (var g : ParsedTreebank)
         {
-            var g = getDependenceGraph(parser);
             var subRes = getEdgeConnectionGraph(g);
             res.addVertices(subRes.vertexList());
             for (var ed : subRes.edgeList())
@@ -7244,22 +7439,12 @@ public class VietnameseAnalyzer
 
     public static void getTernaryCurveTypeConnection()
     {
-        ternaryCurveTypeConnection = new HashMap<>();
-        for (var parser : Parsers)
-        {
-            var g = getDependenceGraph(parser);
-            getCurveTypeConnection(g, 3, ternaryCurveTypeConnection);
-        }
+        TreebankStatistics.run(ParsedTreebank, curveTypeConnectionAccumulator(3, x -> ternaryCurveTypeConnection = x));
     }
 
     public static void getBinaryCurveTypeConnection()
     {
-        binaryCurveTypeConnection = new HashMap<>();
-        for (var parser : Parsers)
-        {
-            var g = getDependenceGraph(parser);
-            getCurveTypeConnection(g, 2, binaryCurveTypeConnection);
-        }
+        TreebankStatistics.run(ParsedTreebank, curveTypeConnectionAccumulator(2, x -> binaryCurveTypeConnection = x));
 //        for (var word : binaryCurveTypeConnection.keySet())
 //        {
 //            var storedTypeses = Utilities.makeHashSet(binaryCurveTypeConnection.get(word).keySet());
@@ -7280,6 +7465,17 @@ public class VietnameseAnalyzer
 
     private static final String $Failed = "$Failed";
 
+    private static TreebankAccumulator<HashMap<String, HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>>>> curveTypeConnectionAccumulator(
+            int length, UnaryAction<HashMap<String, HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>>>> finisher)
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>>>(),
+                (res, g) -> getCurveTypeConnection(g, length, res),
+                TreebankAccumulator::mergeCounts,
+                finisher
+        );
+    }
+
     public static void getCurveTypeConnection(Graph<WordVertex> g, int length, HashMap out)
     {
         UnaryFunction<String, String> toN = (x) ->
@@ -7381,21 +7577,26 @@ public class VietnameseAnalyzer
 
     public static void getCurveTypeConnection()
     {
-        curveTypeConnection = new HashMap<>();
-        for (var parser : Parsers)
-        {
-            var g = getDependenceGraph(parser);
-            var con = getCurveTypeConnection(g);
-            for (var types : con.keySet())
-                for (var indices : con.get(types).keySet())
+        TreebankStatistics.run(ParsedTreebank, curveTypeConnectionAccumulator());
+    }
+
+    private static TreebankAccumulator<HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>>> curveTypeConnectionAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<ArrayList<String>, HashMap<ArrayList<Integer>, Integer>>(),
+                (res, g) ->
                 {
-                    var value = con.get(types).get(indices);
-                    if (!keySequenceExistsQ(curveTypeConnection, types, indices))
-                        insertValue(curveTypeConnection, new Object[]{types, indices}, 0);
-                    var eValue = (Integer) getValue(curveTypeConnection, types, indices);
-                    insertValue(curveTypeConnection, new Object[]{types, indices}, value + eValue);
-                }
-        }
+                    var con = getCurveTypeConnection(g);
+                    for (var types : con.keySet())
+                        for (var indices : con.get(types).keySet())
+                        {
+                            var value = con.get(types).get(indices);
+                            Utilities.insertValue(res, new Object[]{types, indices}, 0, (x) -> x + value);
+                        }
+                },
+                TreebankAccumulator::mergeCounts,
+                res -> curveTypeConnection = res
+        );
     }
 
     /**
@@ -7602,40 +7803,24 @@ public class VietnameseAnalyzer
         HashSet<ArrayList<WordVertex>> currentEds = new HashSet<>();
         currentEds.addAll(startingEdges);
         var eds = g.getEdges();
+        var currentTree = HeadTree.of(g.vertexList(), currentEds);
+        var rootIndex = currentTree.indexOf(root);
         while (true)
         {
-            var rootInvs = NullFunction.createInstance(() ->
-            {
-                var auxg = new Graph<WordVertex>(g.vertexList(), currentEds);
-                return auxg.vertexInComponent(root);
-            }).apply();
+            // cạnh được thêm phải đi từ một đỉnh chưa có cạnh đi ra, chưa nối tới root, vào cây của root
             var chosenEds = Utilities.select(eds,
                     (ArrayList<WordVertex> ed) ->
                     {
-                        var x = ed.get(0);
-                        var y = ed.get(1);
-                        var check0 = rootInvs.contains(y) && !rootInvs.contains(x);
-                        if (!check0)
-                            return false;
-                        var auxg = new Graph<WordVertex>(Utilities.append(currentEds, ed));
-                        return Utilities.allTrue(auxg.vertexList(),
-                                z -> auxg.vertexOutDegree(z) <= 1
-                        );
+                        var x = currentTree.indexOf(ed.get(0));
+                        var y = currentTree.indexOf(ed.get(1));
+                        return currentTree.getHead(x) == -1 && x != rootIndex && currentTree.isDescendant(y, rootIndex);
                     }
             );
             if (chosenEds.size() == 0)
                 break;
-            var chosenEd = findQuickMinimal(chosenEds,
-                    (ed0, ed1) -> orderingf(g, ed0, ed1, currentEds,
-                            NullFunction.createInstance(() ->
-                            {
-                                var aux = (HashMap<String, Object>) options.clone();
-                                aux.put("IgnoreErrors", true);
-                                return aux;
-                            }).apply()
-                    )
-            );
+            var chosenEd = findBestExtension(currentTree, chosenEds, true, null);
             currentEds.add(chosenEd);
+            currentTree.setHead(currentTree.indexOf(chosenEd.get(0)), currentTree.indexOf(chosenEd.get(1)));
         }
         while (true)
         {
@@ -7700,10 +7885,13 @@ public class VietnameseAnalyzer
                 if (chosenEds.size() == 0)
                     continue;
                 final var remainedEds = Utilities.makeHashSet(Utilities.join(inComposEds, otherEds));
-                var chosenEd = findQuickMinimal(chosenEds,
-                        (ed0, ed1) -> orderingf(g, ed0, ed1, remainedEds, options)
-                );
-                if (orderingf(g, chosenEd, auxEd, remainedEds, options) == 0)
+                var ignoreErrors = options.containsKey("IgnoreErrors") ? (boolean) options.get("IgnoreErrors") : false;
+                // các cạnh ứng viên chỉ khác nhau ở cạnh đi ra của v nên lỗi được cập nhật dần từ cây remainedEds
+                var errorState = ignoreErrors ? null : new ErrorState(new Graph<WordVertex>(remainedEds), true);
+                var remainedTree = HeadTree.of(g.vertexList(), remainedEds);
+                var chosenEd = findBestExtension(remainedTree, chosenEds, ignoreErrors, errorState);
+                if (getExtensionScore(remainedTree, chosenEd, ignoreErrors, errorState)
+                        .compareTo(getExtensionScore(remainedTree, auxEd, ignoreErrors, errorState)) == 0)
                     continue;
                 else
                 {
@@ -8330,34 +8518,50 @@ public class VietnameseAnalyzer
         });
     }
 
-    private static int orderingf(Graph<WordVertex> g,
-                                 ArrayList<WordVertex> ed0,
-                                 ArrayList<WordVertex> ed1,
-                                 HashSet<ArrayList<WordVertex>> currentEds,
-                                 HashMap<String, Object> opts)
+    /**
+     * điểm của cây currentTree cùng với ed, đỉnh đầu của ed chưa có cạnh đi ra trong currentTree
+     *
+     * @param errorState lỗi của cây currentTree (bỏ các đỉnh cô lập) hoặc null để đếm lại lỗi từ đầu
+     */
+    private static TreeScore getExtensionScore(HeadTree currentTree,
+                                               ArrayList<WordVertex> ed,
+                                               boolean ignoreErrors,
+                                               ErrorState errorState)
+    {
+        var tree = currentTree.copy();
+        tree.setHead(tree.indexOf(ed.get(0)), tree.indexOf(ed.get(1)));
+        if (ignoreErrors || errorState == null)
+            return getTreeScore(tree, ignoreErrors);
+        var auxTree = tree.withoutIsolated();
+        var eds = new ArrayList<ArrayList<WordVertex>>();
+        eds.add(ed);
+        errorState.replaceEdges(new ArrayList<>(), eds);
+        var errors = getErrorVector(errorState.getErrors());
+        errorState.replaceEdges(eds, new ArrayList<>());
+        var signature = getTreeSignature(auxTree);
+        return new TreeScore(getViolations(auxTree, signature), errors, getTreeWeight(auxTree, signature));
+    }
+
+    /**
+     * mỗi cạnh ứng viên chỉ được đánh giá một lần, cạnh đầu tiên có điểm tốt nhất được chọn giống findQuickMinimal
+     */
+    private static ArrayList<WordVertex> findBestExtension(HeadTree currentTree,
+                                                           Collection<ArrayList<WordVertex>> candidates,
+                                                           boolean ignoreErrors,
+                                                           ErrorState errorState)
     {
-        final var ignErrorsStr = "IgnoreErrors";
-        var ignoreErrors = opts.containsKey(ignErrorsStr) ? (boolean) opts.get(ignErrorsStr) : false;
-        NullFunction<Integer> errorCompareFunc = () ->
+        ArrayList<WordVertex> res = null;
+        TreeScore resScore = null;
+        for (var ed : candidates)
         {
-            var auxg0 = new Graph<WordVertex>(g.vertexList(), Utilities.append(currentEds, ed0));
-            var auxg1 = new Graph<WordVertex>(g.vertexList(), Utilities.append(currentEds, ed1));
-            var errCompare = errorTreeCompare(auxg0, auxg1, ignoreErrors);
-            if (errCompare != 0)
+            var score = getExtensionScore(currentTree, ed, ignoreErrors, errorState);
+            if (res == null || score.compareTo(resScore) < 0)
             {
-                return errCompare < 0 ? -1 : 1;
-            } else return 0;
-        };
-        var funcs = (ArrayList<NullFunction<Integer>>) Utilities.toArrayList(
-                new NullFunction[]{errorCompareFunc}
-        );
-        for (var func : funcs)
-        {
-            var res = func.apply();
-            if (res.intValue() != 0)
-                return res;
+                res = ed;
+                resScore = score;
+            }
         }
-        return 0;
+        return res;
     }
 
     public static String mostCommonType1(String word, HashMap<ArrayList<String>, Double> PR, HashMap<String, String> assuming)
@@ -8607,9 +8811,8 @@ public class VietnameseAnalyzer
     public static void getTypeConnection()
     {
         typeConnection = new HashMap<>();
-        for (var parser : Parsers)
+        for (var g : ParsedTreebank)
         {
-            var g = getDependenceGraph(parser);
             getTypeConnection(g, typeConnection);
         }
     }
@@ -9050,22 +9253,24 @@ public class VietnameseAnalyzer
 
     public static void getLevelAppearance()
     {
-        levelAppearance = new HashMap<>();
-        var lAObj = (HashMap<Object, Object>) (Object) levelAppearance;
-        for (var parser : Parsers)
-        {
-            var g = getDependenceGraph(parser);
-            var levelAp = getLevelAppearance(g);
-            for (var word : levelAp.keySet())
-                for (var type : levelAp.get(word).keySet())
-                    for (var level : levelAp.get(word).get(type).keySet())
-                    {
-                        if (!keySequenceExistsQ(lAObj, word, type, level))
-                            insertValue(lAObj, new Object[]{word, type, level}, 0);
-                        var value = (Integer) getValue(lAObj, word, type, level);
-                        insertValue(lAObj, new Object[]{word, type, level}, value + 1);
-                    }
-        }
+        TreebankStatistics.run(ParsedTreebank, levelAppearanceAccumulator());
+    }
+
+    private static TreebankAccumulator<HashMap<String, HashMap<String, HashMap<Integer, Integer>>>> levelAppearanceAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, HashMap<String, HashMap<Integer, Integer>>>(),
+                (res, g) ->
+                {
+                    var levelAp = getLevelAppearance(g);
+                    for (var word : levelAp.keySet())
+                        for (var type : levelAp.get(word).keySet())
+                            for (var level : levelAp.get(word).get(type).keySet())
+                                Utilities.insertValue(res, new Object[]{word, type, level}, 0, (x) -> x + 1);
+                },
+                TreebankAccumulator::mergeCounts,
+                res -> levelAppearance = res
+        );
     }
 
     public static HashMap<String, HashMap<String, HashMap<Integer, Integer>>> getLevelAppearance(Graph<WordVertex> g)
@@ -9127,24 +9332,28 @@ public class VietnameseAnalyzer
 
     public static void getTypeDependency()
     {
-        typeDependency = new HashMap<>();
-        for (var parser : Parsers)
-        {
-            var gr = getDependenceGraph(parser);
-            for (var ed : gr.getEdges())
-            {
-                var v0 = (WordVertex) ed.get(0);
-                var v1 = (WordVertex) ed.get(1);
-                var type0 = v0.Type;
-                var type1 = v1.Type;
-                var direction = v0.Location < v1.Location ? "next" : "before";
-                var tDobj = (HashMap<Object, Object>) (Object) typeDependency;
-                if (!keySequenceExistsQ(tDobj, type0, type1, direction))
-                    insertValue(tDobj, new Object[]{type0, type1, direction}, 0);
-                var value = (Integer) getValue(tDobj, type0, type1, direction);
-                insertValue(tDobj, new Object[]{type0, type1, direction}, value + 1);
-            }
-        }
+        TreebankStatistics.run(ParsedTreebank, typeDependencyAccumulator());
+    }
+
+    private static TreebankAccumulator<HashMap<String, HashMap<String, HashMap<String, Integer>>>> typeDependencyAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, HashMap<String, HashMap<String, Integer>>>(),
+                (res, gr) ->
+                {
+                    for (var ed : gr.getEdges())
+                    {
+                        var v0 = (WordVertex) ed.get(0);
+                        var v1 = (WordVertex) ed.get(1);
+                        var type0 = v0.Type;
+                        var type1 = v1.Type;
+                        var direction = v0.Location < v1.Location ? "next" : "before";
+                        Utilities.insertValue(res, new Object[]{type0, type1, direction}, 0, (x) -> x + 1);
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                res -> typeDependency = res
+        );
     }
 
     private static <S, T, U> Object getValue(HashMap<S, T> hm, U... keys)
@@ -9212,35 +9421,51 @@ public class VietnameseAnalyzer
     {
         if (WordAppearances != null)
             return WordAppearances;
-        WordAppearances = new HashMap<>();
-        for (var parser : Parsers)
-        {
-            var tree = getDependenceGraph(parser);
-            for (var v : tree.vertexList())
-            {
-                Utilities.insertValue(WordAppearances,
-                        new Object[]{v.Word, v.Type}, 0, (x) -> x + 1
-                );
-            }
-        }
+        TreebankStatistics.run(ParsedTreebank, wordAppearancesAccumulator());
         return WordAppearances;
     }
 
+    private static TreebankAccumulator<HashMap<String, HashMap<String, Integer>>> wordAppearancesAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, HashMap<String, Integer>>(),
+                (res, tree) ->
+                {
+                    for (var v : tree.vertexList())
+                    {
+                        Utilities.insertValue(res,
+                                new Object[]{v.Word, v.Type}, 0, (x) -> x + 1
+                        );
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                res -> WordAppearances = res
+        );
+    }
+
     public static void getTotalAppearance()
     {
-        totalAppearance = new HashMap<>();
-        for (var parser : Parsers)
-        {
-            var gr = getDependenceGraph(parser);
-            for (var v : gr.getVertices())
-            {
-                var word = ((WordVertex) v).Word;
-                if (!totalAppearance.containsKey(word))
-                    totalAppearance.put(word, 0);
-                var value = totalAppearance.get(word);
-                totalAppearance.put(word, value + 1);
-            }
-        }
+        TreebankStatistics.run(ParsedTreebank, totalAppearanceAccumulator());
+    }
+
+    private static TreebankAccumulator<HashMap<String, Integer>> totalAppearanceAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, Integer>(),
+                (res, gr) ->
+                {
+                    for (var v : gr.getVertices())
+                    {
+                        var word = ((WordVertex) v).Word;
+                        if (!res.containsKey(word))
+                            res.put(word, 0);
+                        var value = res.get(word);
+                        res.put(word, value + 1);
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                res -> totalAppearance = res
+        );
     }
 
     public static String normalizeUnderscoredWord(String s)
@@ -9263,38 +9488,46 @@ public class VietnameseAnalyzer
 
     public static void getWordDependence()
     {
-        outWordDependence = new HashMap<>();
-        for (var parser : Parsers)
-        {
-            var gr = getDependenceGraph(parser);
-            var eds = (HashSet<ArrayList<WordVertex>>) ((Object) gr.getEdges());
-            for (var ed : eds)
-            {
-                var v0 = ed.get(0);
-                var word = v0.Word;
-                var type0 = v0.Type;
-                var v1 = ed.get(1);
-                var type1 = v1.Type;
-                var direction = v0.Location < v1.Location ? "next" : "before";
-                if (!outWordDependence.containsKey(word))
-                    outWordDependence.put(word, new HashMap<>());
-                if (!outWordDependence.get(word).containsKey(type0))
-                    outWordDependence.get(word).put(type0, new HashMap<>());
-                if (!outWordDependence.get(word).get(type0).containsKey(type1))
-                    outWordDependence.get(word).get(type0).put(type1, new HashMap<>());
-                if (!outWordDependence.get(word).get(type0).get(type1).containsKey(direction))
-                    outWordDependence.get(word).get(type0).get(type1).put(direction, 0);
-                var value = outWordDependence.get(word).get(type0).get(type1).get(direction);
-                outWordDependence.get(word).get(type0).get(type1).put(direction, value + 1);
-            }
-        }
+        TreebankStatistics.run(ParsedTreebank, wordDependenceAccumulator());
+    }
+
+    private static TreebankAccumulator<HashMap<String, HashMap<String, HashMap<String, HashMap<String, Integer>>>>> wordDependenceAccumulator()
+    {
+        return new TreebankAccumulator<>(
+                () -> new HashMap<String, HashMap<String, HashMap<String, HashMap<String, Integer>>>>(),
+                (res, gr) ->
+                {
+                    var eds = (HashSet<ArrayList<WordVertex>>) ((Object) gr.getEdges());
+                    for (var ed : eds)
+                    {
+                        var v0 = ed.get(0);
+                        var word = v0.Word;
+                        var type0 = v0.Type;
+                        var v1 = ed.get(1);
+                        var type1 = v1.Type;
+                        var direction = v0.Location < v1.Location ? "next" : "before";
+                        if (!res.containsKey(word))
+                            res.put(word, new HashMap<>());
+                        if (!res.get(word).containsKey(type0))
+                            res.get(word).put(type0, new HashMap<>());
+                        if (!res.get(word).get(type0).containsKey(type1))
+                            res.get(word).get(type0).put(type1, new HashMap<>());
+                        if (!res.get(word).get(type0).get(type1).containsKey(direction))
+                            res.get(word).get(type0).get(type1).put(direction, 0);
+                        var value = res.get(word).get(type0).get(type1).get(direction);
+                        res.get(word).get(type0).get(type1).put(direction, value + 1);
+                    }
+                },
+                TreebankAccumulator::mergeCounts,
+                res -> outWordDependence = res
+        );
     }
 
     private static CustomHashSet<Character> trivialCharacters = new CustomHashSet<>(
             new Character[]{' ', '_', '.', '\"', '-', ':', '!', '?', '%'}
     );
 
-    private static boolean isValidWord(String word)
+    public static boolean isValidWord(String word)
     {
         for (var i = 0; i <= word.length() - 1; i++)
         {
@@ -9379,15 +9612,328 @@ public class VietnameseAnalyzer
 //        forbiddenTypeConnections.add(new CustomArrayList<String>(new String[]{null, "A", "V"}));
     }
 
+    private static final ReentrantReadWriteLock ModelLock = new ReentrantReadWriteLock();
+    /**
+     * model mà các biến tĩnh đang giữ, chỉ được đọc hoặc gán khi giữ ModelLock
+     */
+    private static AnalyzerModel InstalledModel = null;
+    private static volatile AnalyzerModel DefaultModel = null;
+
     public static void initialize()
     {
         var obj = new VietnameseAnalyzer();
-        VietnameseAnalyzer.Parsers = obj.getDataFromFile();
-        getWordAppearances();
-        VietnameseAnalyzer.getErrorAppearanceStatics();
+        setDefaultModel(buildModel(obj.readTreebank()));
+    }
+
+    /**
+     * nạp model từ tệp được tạo bởi compileModel mà không cần đọc lại vtb.txt
+     *
+     * @param snapshot
+     */
+    public static void initialize(Path snapshot)
+    {
+        setDefaultModel(AnalyzerModel.load(snapshot));
+    }
+
+    /**
+     * model được dùng bởi các hàm tĩnh không nhận model, ví dụ như decideParser(sentence)
+     *
+     * @param model
+     */
+    public static synchronized void setDefaultModel(AnalyzerModel model)
+    {
+        installModel(model);
+        DefaultModel = model;
         VietnameseAnalyzer.isInitialized = true;
     }
 
+    public static AnalyzerModel getDefaultModel()
+    {
+        var res = DefaultModel;
+        if (res != null)
+            return res;
+        synchronized (VietnameseAnalyzer.class)
+        {
+            if (DefaultModel == null)
+                initialize();
+            return DefaultModel;
+        }
+    }
+
+    /**
+     * tính tất cả các bảng của model từ kho dữ liệu huấn luyện
+     *
+     * @param treebank
+     * @return
+     */
+    public static AnalyzerModel buildModel(Treebank treebank)
+    {
+        ModelLock.writeLock().lock();
+        try
+        {
+            setModelTables(new LinkedHashMap<>());
+            ParsedTreebank = treebank;
+            buildStatistics();
+            InstalledModel = new AnalyzerModel(getModelTables());
+            InstalledModel.Index = getModelIndex();
+            ChunkSegmentations = InstalledModel.getSegmentations();
+            return InstalledModel;
+        } finally
+        {
+            ModelLock.writeLock().unlock();
+        }
+    }
+
+    private static void installModel(AnalyzerModel model)
+    {
+        ModelLock.writeLock().lock();
+        try
+        {
+            if (InstalledModel != model)
+            {
+                setModelTables(model.getTables());
+                // chỉ mục được tạo cho các bảng của model nên isBuiltFrom vẫn đúng khi model được cài lại
+                if (model.Index != null)
+                    Index = model.Index;
+                else model.Index = getModelIndex();
+                ChunkSegmentations = model.getSegmentations();
+                InstalledModel = model;
+            }
+        } finally
+        {
+            ModelLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * chạy func khi các biến tĩnh đang giữ các bảng của model, các luồng dùng cùng một model chạy song song,
+     * đổi sang model khác phải chờ các luồng đang dùng model cũ chạy xong
+     */
+    private static <T> T withModel(AnalyzerModel model, NullFunction<T> func)
+    {
+        if (model == null)
+            throw new RuntimeException("model is null");
+        while (true)
+        {
+            ModelLock.readLock().lock();
+            try
+            {
+                if (InstalledModel == model)
+                    return func.apply();
+            } finally
+            {
+                ModelLock.readLock().unlock();
+            }
+            installModel(model);
+        }
+    }
+
+    /**
+     * tính các bảng thống kê còn thiếu bằng ít lần duyệt kho dữ liệu nhất có thể,
+     * các bảng độc lập được tính chung trong lần duyệt đầu, các bảng cần bảng khác được tính ở các lần sau
+     */
+    public static void buildStatistics()
+    {
+        var independent = new TreebankStatistics();
+        if (WordAppearances == null)
+            independent.register(wordAppearancesAccumulator());
+        if (EssentialOutsideTypes == null)
+            independent.register(essentialOutsideTypesAccumulator());
+        if (RootTypeAppearances == null)
+            independent.register(rootTypeAppearancesAccumulator());
+        if (WordAppearancesToEdgeWeightLeastSquare == null)
+            independent.register(wordAppearancesToEdgeWeightCounterAccumulator());
+        if (WordNextWords == null)
+            independent.register(wordNextWordsAccumulator());
+        if (NextTypes == null)
+            independent.register(connectingTypesAccumulator("next", x -> NextTypes = x));
+        if (BeforeTypes == null)
+            independent.register(connectingTypesAccumulator("before", x -> BeforeTypes = x));
+        if (PronounAdverbProperties == null)
+            independent.register(pronounAdverbPropertiesAccumulator());
+        if (TernaryLocals == null)
+            independent.register(ternaryLocalsAccumulator());
+        if (VocabularyTypes == null)
+            independent.register(vocabularyTypesAccumulator());
+        if (AdverbPs == null)
+            independent.register(adverbPsAccumulator());
+        if (TypePerfectPrecedingTypes == null)
+            independent.register(typePerfectConnectingTypesAccumulator("preceding", false,
+                    x -> TypePerfectPrecedingTypes = x
+            ));
+        if (TypePerfectFollowingTypes == null)
+            independent.register(typePerfectConnectingTypesAccumulator("following", false,
+                    x -> TypePerfectFollowingTypes = x
+            ));
+        if (NounMissingVerbs == null)
+            independent.register(nounMissingVerbsAccumulator());
+        if (typePairDirections == null)
+            independent.register(typePairDirectionsAccumulator(x -> typePairDirections = x));
+        if (WordIncomingTypes == null)
+            independent.register(wordConnectingTypesAccumulator("incoming", x -> WordIncomingTypes = x));
+        if (WordOutcomingTypes == null)
+            independent.register(wordConnectingTypesAccumulator("outcoming", x -> WordOutcomingTypes = x));
+        independent.run(ParsedTreebank);
+        if (typePairDirectionLeastSquares == null)
+            initializeTypePairDirectionLeastSquares();
+        // các hồi quy dưới đây dùng getModelIndex, chỉ mục phải gộp các kiểu tương tự như isSimilarType
+        getReducedTypeMap();
+
+        var regressions = new TreebankStatistics();
+        if (WordAppearancesToEdgeWeightLeastSquare == null)
+            regressions.register(wordAppearancesToEdgeWeightLeastSquareAccumulator());
+        if (EndingNextBeforeLeastSquare == null)
+            regressions.register(endingNextBeforeLeastSquareAccumulator());
+        if (StartingNextBeforeLeastSquare == null)
+            regressions.register(startingNextBeforeLeastSquareAccumulator());
+        if (NextBeforeLeastSquare == null)
+            regressions.register(nextBeforeLeastSquareAccumulator());
+        regressions.run(ParsedTreebank);
+
+        // CloseSeparation cần WordAppearancesToEdgeWeightLeastSquare, countErrors lại cần CloseSeparation
+        if (CloseSeparation == null)
+            TreebankStatistics.run(ParsedTreebank, closeSeparationAccumulator());
+        if (ErrorPropertyImportance == null)
+            TreebankStatistics.run(ParsedTreebank, errorAppearanceStaticsAccumulator());
+
+        // các bảng còn lại được tính từ các bảng trên, tính luôn ở đây để khi phân tích câu không còn bảng nào được gán
+        getWordAppearanceMean();
+        getWordIncomingAppearanceMean();
+        getWordOutcomingAppearanceMean();
+        getModelIndex();
+    }
+
+    /**
+     * lưu model mặc định vào tệp snapshot
+     *
+     * @param snapshot
+     */
+    public static void compileModel(Path snapshot)
+    {
+        getDefaultModel().save(snapshot);
+    }
+
+    /**
+     * @return các bảng được tính trong buildStatistics, một model phải có đủ các bảng này
+     */
+    private static LinkedHashMap<String, Object> getModelTables()
+    {
+        var res = new LinkedHashMap<String, Object>();
+        res.put("WordAppearances", WordAppearances);
+        res.put("ErrorPropertyImportance", ErrorPropertyImportance);
+        res.put("EssentialOutsideTypes", EssentialOutsideTypes);
+        res.put("RootTypeAppearances", RootTypeAppearances);
+        res.put("WordAppearancesToEdgeWeightCounter", WordAppearancesToEdgeWeightCounter);
+        res.put("WordAppearancesToEdgeWeightLeastSquare", WordAppearancesToEdgeWeightLeastSquare);
+        res.put("EndingNextBeforeLeastSquare", EndingNextBeforeLeastSquare);
+        res.put("StartingNextBeforeLeastSquare", StartingNextBeforeLeastSquare);
+        res.put("NextBeforeLeastSquare", NextBeforeLeastSquare);
+        res.put("WordNextWords", WordNextWords);
+        res.put("BeforeTypes", BeforeTypes);
+        res.put("NextTypes", NextTypes);
+        res.put("PronounAdverbProperties", PronounAdverbProperties);
+        res.put("TernaryLocals", TernaryLocals);
+        res.put("CloseSeparation", CloseSeparation);
+        res.put("CloseCounter", CloseCounter);
+        res.put("VocabularyTypes", VocabularyTypes);
+        res.put("AdverbPs", AdverbPs);
+        res.put("TypePerfectPrecedingTypes", TypePerfectPrecedingTypes);
+        res.put("TypePerfectFollowingTypes", TypePerfectFollowingTypes);
+        res.put("ReducedTypeMap", ReducedTypeMap);
+        res.put("NounMissingVerbs", NounMissingVerbs);
+        res.put("typePairDirections", typePairDirections);
+        res.put("typePairDirectionLeastSquares", typePairDirectionLeastSquares);
+        res.put("WordAppearanceMean", WordAppearanceMean);
+        res.put("WordIncomingTypes", WordIncomingTypes);
+        res.put("WordOutcomingTypes", WordOutcomingTypes);
+        res.put("WordIncomingAppearanceMean", WordIncomingAppearanceMean);
+        res.put("WordOutcomingAppearanceMean", WordOutcomingAppearanceMean);
+        return res;
+    }
+
+    /**
+     * kiểm tra tables có đủ các bảng của getModelTables, ví dụ khi nạp từ tệp snapshot
+     *
+     * @param tables
+     */
+    static void checkModelTables(Map<String, Object> tables)
+    {
+        for (var name : getModelTables().keySet())
+            if (tables.get(name) == null)
+                throw new RuntimeException("model table " + name + " is missing");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void setModelTables(Map<String, Object> tables)
+    {
+        WordAppearances = (HashMap) tables.get("WordAppearances");
+        ErrorPropertyImportance = (HashMap) tables.get("ErrorPropertyImportance");
+        EssentialOutsideTypes = (HashSet) tables.get("EssentialOutsideTypes");
+        RootTypeAppearances = (HashMap) tables.get("RootTypeAppearances");
+        WordAppearancesToEdgeWeightCounter = (HashMap) tables.get("WordAppearancesToEdgeWeightCounter");
+        WordAppearancesToEdgeWeightLeastSquare = (ArrayList) tables.get("WordAppearancesToEdgeWeightLeastSquare");
+        EndingNextBeforeLeastSquare = (ArrayList) tables.get("EndingNextBeforeLeastSquare");
+        StartingNextBeforeLeastSquare = (ArrayList) tables.get("StartingNextBeforeLeastSquare");
+        NextBeforeLeastSquare = (ArrayList) tables.get("NextBeforeLeastSquare");
+        WordNextWords = (HashMap) tables.get("WordNextWords");
+        BeforeTypes = (HashMap) tables.get("BeforeTypes");
+        NextTypes = (HashMap) tables.get("NextTypes");
+        PronounAdverbProperties = (HashMap) tables.get("PronounAdverbProperties");
+        TernaryLocals = (HashMap) tables.get("TernaryLocals");
+        CloseSeparation = (HashMap) tables.get("CloseSeparation");
+        CloseCounter = (HashMap) tables.get("CloseCounter");
+        VocabularyTypes = (HashSet) tables.get("VocabularyTypes");
+        AdverbPs = (HashSet) tables.get("AdverbPs");
+        TypePerfectPrecedingTypes = (HashMap) tables.get("TypePerfectPrecedingTypes");
+        TypePerfectFollowingTypes = (HashMap) tables.get("TypePerfectFollowingTypes");
+        ReducedTypeMap = (HashMap) tables.get("ReducedTypeMap");
+        NounMissingVerbs = (HashMap) tables.get("NounMissingVerbs");
+        typePairDirections = (HashMap) tables.get("typePairDirections");
+        typePairDirectionLeastSquares = (Double) tables.get("typePairDirectionLeastSquares");
+        WordAppearanceMean = (Double) tables.get("WordAppearanceMean");
+        WordIncomingTypes = (HashMap) tables.get("WordIncomingTypes");
+        WordOutcomingTypes = (HashMap) tables.get("WordOutcomingTypes");
+        WordIncomingAppearanceMean = (Double) tables.get("WordIncomingAppearanceMean");
+        WordOutcomingAppearanceMean = (Double) tables.get("WordOutcomingAppearanceMean");
+        // các bảng không có trong model được tính lại từ ParsedTreebank khi cần
+        RootLocalStructures = null;
+        EndingErrorPs = null;
+        TypePerfectConnectingTypesError = null;
+        TypePerfectAttachings = null;
+        BalancedTypePairs = null;
+        InsideOutsideLeastSquares = null;
+        VertexToEdgeRankLeastSquaresNext = null;
+        VertexToEdgeRankLeastSquaresBefore = null;
+        toFirstLevelLeastSquares = null;
+        toSecondLevelLeastSquares = null;
+        EdgePR = null;
+        VertexPR = null;
+    }
+
+    /**
+     * đọc vtb.txt thẳng thành Treebank, tệp được ánh xạ vào bộ nhớ nếu nằm trên đĩa
+     *
+     * @return
+     */
+    public Treebank readTreebank()
+    {
+        var url = this.getClass().getClassLoader().getResource("vtb.txt");
+        if (url == null)
+            throw new RuntimeException("vtb.txt is not found");
+        try
+        {
+            if (url.getProtocol().equals("file"))
+                return TreebankReader.read(Path.of(url.toURI()));
+            try (var iS = url.openStream())
+            {
+                return TreebankReader.read(iS);
+            }
+        } catch (IOException | URISyntaxException e)
+        {
+            throw new RuntimeException("unable to read vtb.txt: " + e.getMessage());
+        }
+    }
+
     public ArrayList<ArrayList<ArrayList<String>>> getDataFromFile() throws RuntimeException
     {
         var res = new ArrayList<ArrayList<ArrayList<String>>>();
@@ -0,0 +1,122 @@
+package vietnameseanalyzer;
+
+import com.trung.Graph;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * kiểm tra các lỗi được cập nhật dần trong ErrorState khớp với countErrors sau các lần đổi cạnh ngẫu nhiên
+ */
+public class ErrorStateTest
+{
+    public static void main(String[] argv)
+    {
+        VietnameseAnalyzer.initialize();
+        var sentences = new String[]{
+                "những người nông dân làm việc chăm chỉ trên cánh đồng",
+                "tôi yêu cô ấy rất nhiều"
+        };
+        var check = true;
+        for (var sentence : sentences)
+        {
+            var parser = VietnameseAnalyzer.decideParser(sentence);
+            for (var seed = 0; seed <= 9; seed++)
+                if (!matchesCountErrors(parser, 200, seed))
+                {
+                    System.out.println("ErrorState không khớp với countErrors: " + sentence + ", seed " + seed);
+                    check = false;
+                }
+        }
+        if (!check)
+            System.exit(1);
+        System.out.println("ErrorState khớp với countErrors");
+    }
+
+    /**
+     * chuyển ngẫu nhiên cây con của một đỉnh sang một đỉnh cha khác rồi chuyển lại, sau mỗi lần so getErrors với
+     * countErrors của một bản sao của cây được đổi cạnh theo cùng cách
+     *
+     * @param tree  cây không có đỉnh cô lập
+     * @param count số lần chuyển
+     * @param seed
+     * @return true nếu mọi lần đều cho cùng kết quả
+     */
+    public static boolean matchesCountErrors(Graph<WordVertex> tree, int count, long seed)
+    {
+        var random = new Random(seed);
+        var state = new ErrorState(tree, true);
+        // bản sao được xử lý như trong hàm tạo của ErrorState
+        var copiedTree = tree.clone();
+        if (copiedTree instanceof Parser)
+            ((Parser) copiedTree).deleteMeaningSupplementEdges();
+        copiedTree.deleteVertices(VietnameseAnalyzer.isolatedVertices(copiedTree));
+        if (!state.getErrors().equals(VietnameseAnalyzer.countErrors(copiedTree)))
+            return false;
+        for (var i = 0; i <= count - 1; i++)
+        {
+            var vs = new ArrayList<WordVertex>(copiedTree.vertexList());
+            vs.sort((x, y) -> x.Location != y.Location ? Integer.compare(x.Location, y.Location) : x.Type.compareTo(y.Type));
+            var v = vs.get(random.nextInt(vs.size()));
+            var oldHead = getHead(copiedTree, v);
+            if (oldHead == null)
+                continue;
+            var subTree = copiedTree.vertexInComponent(v);
+            var heads = new ArrayList<WordVertex>();
+            for (var w : vs)
+                if (!subTree.contains(w) && !w.equals(oldHead))
+                    heads.add(w);
+            if (heads.isEmpty())
+                continue;
+            var oldEds = new ArrayList<ArrayList<WordVertex>>();
+            oldEds.add(edge(v, oldHead));
+            var newEds = new ArrayList<ArrayList<WordVertex>>();
+            newEds.add(edge(v, heads.get(random.nextInt(heads.size()))));
+            // tách rời, nối vào đỉnh mới, rồi có khi giữ luôn cây mới
+            if (!replaceEdges(state, copiedTree, oldEds, new ArrayList<>()))
+                return false;
+            if (!replaceEdges(state, copiedTree, new ArrayList<>(), newEds))
+                return false;
+            if (random.nextBoolean() && !replaceEdges(state, copiedTree, newEds, oldEds))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * thay cạnh trong state và trong tree, các đỉnh không còn cạnh nào bị bỏ khỏi tree như trong ErrorState
+     *
+     * @return true nếu getErrors cho cùng kết quả với countErrors của tree sau khi thay
+     */
+    private static boolean replaceEdges(ErrorState state, Graph<WordVertex> tree,
+                                        ArrayList<ArrayList<WordVertex>> removedEds,
+                                        ArrayList<ArrayList<WordVertex>> addedEds)
+    {
+        state.replaceEdges(removedEds, addedEds);
+        for (var ed : removedEds)
+        {
+            tree.deleteEdge(ed);
+            for (var v : ed)
+                if (tree.containsVertex(v) && tree.vertexInDegree(v) == 0 && tree.vertexOutDegree(v) == 0)
+                    tree.deleteVertex(v);
+        }
+        for (var ed : addedEds)
+            tree.addEdge(ed.get(0), ed.get(1));
+        return state.getErrors().equals(VietnameseAnalyzer.countErrors(tree));
+    }
+
+    private static WordVertex getHead(Graph<WordVertex> tree, WordVertex v)
+    {
+        for (var head : tree.outGoingVertices(v))
+            return head;
+        return null;
+    }
+
+    private static ArrayList<WordVertex> edge(WordVertex v0, WordVertex v1)
+    {
+        var res = new ArrayList<WordVertex>();
+        res.add(v0);
+        res.add(v1);
+        return res;
+    }
+}